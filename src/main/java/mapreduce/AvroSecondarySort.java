@@ -0,0 +1,129 @@
+/**
+ * Este archivo contiene la clase AvroSecondarySort que configura el orden
+ * secundario de los trabajos Avro: las claves son registros, el reducer recibe
+ * juntas las claves con los mismos primeros campos y los valores le llegan
+ * ordenados por los campos restantes.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.io.BinaryData;
+import org.apache.avro.mapred.AvroCollector;
+import org.apache.avro.mapred.AvroJob;
+import org.apache.avro.mapred.AvroKey;
+import org.apache.avro.mapred.AvroReducer;
+import org.apache.avro.mapred.AvroValue;
+import org.apache.avro.mapred.AvroWrapper;
+import org.apache.avro.mapred.Pair;
+import org.apache.avro.specific.SpecificData;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+import org.apache.hadoop.mapred.Reporter;
+
+// Es el mismo patron de IntPair, FirstPartitioner y GroupCopmparator en
+// SortPopularGenresByYearMapRed, pero para claves Avro: AvroJob ya ordena por
+// todos los campos del registro de la clave, y aqui se agregan un particionador
+// y un comparador de grupos que solo miran los primeros campos. Los dos usan una
+// copia del esquema de la clave con "order": "ignore" en los demas campos, asi
+// que comparan los bytes serializados sin decodificar las claves
+public class AvroSecondarySort {
+
+    public static final String GROUP_FIELDS_KEY = "avro.secondary.sort.group.fields";
+
+    // Configura el esquema de salida del map y agrupa las claves por sus primeros
+    // groupFields campos. Las claves con los mismos primeros campos van al mismo
+    // reducer y a la misma llamada de reduce()
+    public static void configure(JobConf conf, Schema keySchema, Schema valueSchema, int groupFields) {
+        if (keySchema.getType() != Schema.Type.RECORD || groupFields < 1 || groupFields > keySchema.getFields().size()) {
+            throw new IllegalArgumentException("El orden secundario necesita una clave record con al menos "
+                + groupFields + " campos: " + keySchema);
+        }
+        AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(keySchema, valueSchema));
+        conf.setInt(GROUP_FIELDS_KEY, groupFields);
+        conf.setPartitionerClass(GroupPartitioner.class);
+        conf.setOutputValueGroupingComparator(GroupComparator.class);
+    }
+
+    // Esquema de la clave de salida del map en el que solo cuentan los primeros campos
+    static Schema groupSchema(Configuration conf) {
+        Schema keySchema = Pair.getKeySchema(AvroJob.getMapOutputSchema(conf));
+        int groupFields = conf.getInt(GROUP_FIELDS_KEY, keySchema.getFields().size());
+        List<Field> fields = new ArrayList<>();
+        for (Field field : keySchema.getFields()) {
+            Field.Order order = field.pos() < groupFields ? field.order() : Field.Order.IGNORE;
+            fields.add(new Field(field.name(), field.schema(), field.doc(), field.defaultVal(), order));
+        }
+        return Schema.createRecord(keySchema.getName(), keySchema.getDoc(), keySchema.getNamespace(),
+            keySchema.isError(), fields);
+    }
+
+    // Particiona por el hash de los primeros campos de la clave
+    public static class GroupPartitioner<K, V> implements Partitioner<AvroKey<K>, AvroValue<V>> {
+
+        private Schema schema;
+
+        @Override
+        public void configure(JobConf job) {
+            schema = groupSchema(job);
+        }
+
+        @Override
+        public int getPartition(AvroKey<K> key, AvroValue<V> value, int numPartitions) {
+            return (SpecificData.get().hashCode(key.datum(), schema) & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    // Compara solo los primeros campos de la clave para formar los grupos del reducer
+    public static class GroupComparator<T> extends Configured implements RawComparator<AvroWrapper<T>> {
+
+        private Schema schema;
+
+        @Override
+        public void setConf(Configuration conf) {
+            super.setConf(conf);
+            if (conf != null) {
+                schema = groupSchema(conf);
+            }
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return BinaryData.compare(b1, s1, l1, b2, s2, l2, schema);
+        }
+
+        @Override
+        public int compare(AvroWrapper<T> x, AvroWrapper<T> y) {
+            return SpecificData.get().compare(x.datum(), y.datum(), schema);
+        }
+    }
+
+    // Combiner que deja un solo valor por cada clave completa repetida. Sirve
+    // cuando el valor solo repite los campos de la clave, como al contar distintos
+    public static class DistinctCombiner<K, V> extends AvroReducer<K, V, Pair<K, V>> {
+
+        private Schema keySchema;
+        private Schema valueSchema;
+
+        @Override
+        public void configure(JobConf job) {
+            Schema schema = AvroJob.getMapOutputSchema(job);
+            keySchema = Pair.getKeySchema(schema);
+            valueSchema = Pair.getValueSchema(schema);
+        }
+
+        @Override
+        public void reduce(K key, Iterable<V> values, AvroCollector<Pair<K, V>> collector, Reporter reporter)
+                throws IOException {
+            collector.collect(new Pair<K, V>(key, keySchema, values.iterator().next(), valueSchema));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Este archivo contiene la clase BlockStatsIndex con el indice de estadisticas por
+ * bloque que el serializador escribe junto a cada archivo avro de registros.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.mapred.FsInput;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import classes.avro.BlockStats;
+import classes.avro.SpotifyTrack;
+
+// Con -D spotify.serializer.stats=true, por cada archivo <parte>.avro se escribe
+// _<parte>.avro.stats con un registro BlockStats por bloque: su posicion, la
+// cantidad de filas y el minimo, maximo y nulos de las columnas de COLUMNS.
+// Un trabajo que declara limites con SpotifyInputFormat.setMinimum/setMaximum
+// (o un rango spotify.input.years) no lee los bloques que segun el indice no
+// tienen ninguna fila dentro de los limites. Las filas de los bloques que si se
+// leen llegan todas al mapper, que sigue aplicando su propia condicion
+public class BlockStatsIndex {
+
+    public static final String[] COLUMNS = {"year_of_release", "popularity", "album_popularity", "artist_popularity"};
+    public static final String MIN_PREFIX = "spotify.input.min.";
+    public static final String MAX_PREFIX = "spotify.input.max.";
+
+    // Contadores del trabajo con los bloques leidos y saltados
+    public enum Counter { BLOCKS_READ, BLOCKS_SKIPPED, ROWS_SKIPPED }
+
+    private static final int[] POSITIONS = new int[COLUMNS.length];
+    static {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            POSITIONS[i] = SpotifyTrack.getClassSchema().getField(COLUMNS[i]).pos();
+        }
+    }
+
+    // Indice del archivo avro dataFile
+    public static Path path(Path dataFile) {
+        return new Path(dataFile.getParent(), "_" + dataFile.getName() + ".stats");
+    }
+
+    public static int column(String name) {
+        int column = Arrays.asList(COLUMNS).indexOf(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("La columna " + name + " no esta en el indice de bloques: "
+                + Arrays.toString(COLUMNS));
+        }
+        return column;
+    }
+
+    public static void write(Configuration conf, Path dataFile, List<BlockStats> blocks, CodecFactory codec)
+            throws IOException {
+        FileSystem fs = dataFile.getFileSystem(conf);
+        try (DataFileWriter<BlockStats> writer = new DataFileWriter<>(new SpecificDatumWriter<>(BlockStats.class))) {
+            writer.setCodec(codec);
+            writer.create(BlockStats.getClassSchema(), fs.create(path(dataFile), true));
+            for (BlockStats block : blocks) {
+                writer.append(block);
+            }
+        }
+    }
+
+    // Bloques del archivo, o null si se escribió sin indice
+    public static List<BlockStats> read(Configuration conf, Path dataFile) throws IOException {
+        Path index = path(dataFile);
+        if (!index.getFileSystem(conf).exists(index)) {
+            return null;
+        }
+        List<BlockStats> blocks = new ArrayList<>();
+        try (DataFileReader<BlockStats> reader =
+                 new DataFileReader<>(new FsInput(index, conf), new SpecificDatumReader<>(BlockStats.class))) {
+            while (reader.hasNext()) {
+                blocks.add(reader.next());
+            }
+        }
+        return blocks;
+    }
+
+    // Acumula las estadisticas del bloque que se esta escribiendo
+    public static class Collector {
+        private final Integer[] min = new Integer[COLUMNS.length];
+        private final Integer[] max = new Integer[COLUMNS.length];
+        private final long[] nulls = new long[COLUMNS.length];
+        private long rows;
+
+        public void add(SpotifyTrack track) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                Integer value = (Integer) track.get(POSITIONS[i]);
+                if (value == null) {
+                    nulls[i]++;
+                } else {
+                    if (min[i] == null || value < min[i]) {
+                        min[i] = value;
+                    }
+                    if (max[i] == null || value > max[i]) {
+                        max[i] = value;
+                    }
+                }
+            }
+            rows++;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        // Retorna las estadisticas del bloque que empieza en offset y empieza uno nuevo
+        public BlockStats finish(long offset) {
+            List<Long> nullCounts = new ArrayList<>();
+            for (long count : nulls) {
+                nullCounts.add(count);
+            }
+            BlockStats block = new BlockStats(offset, rows, new ArrayList<>(Arrays.asList(min)),
+                                              new ArrayList<>(Arrays.asList(max)), nullCounts);
+            Arrays.fill(min, null);
+            Arrays.fill(max, null);
+            Arrays.fill(nulls, 0);
+            rows = 0;
+            return block;
+        }
+    }
+
+    // Limites de las columnas del indice que declaró el trabajo
+    public static class Predicate {
+        private final Integer[] min = new Integer[COLUMNS.length];
+        private final Integer[] max = new Integer[COLUMNS.length];
+
+        // Limites de la configuracion, o null si el trabajo no declaró ninguno
+        public static Predicate fromConf(Configuration conf) {
+            Predicate predicate = new Predicate();
+            boolean bounded = false;
+            for (int i = 0; i < COLUMNS.length; i++) {
+                String min = conf.getTrimmed(MIN_PREFIX + COLUMNS[i]);
+                String max = conf.getTrimmed(MAX_PREFIX + COLUMNS[i]);
+                if (min != null) {
+                    predicate.min[i] = Integer.valueOf(min);
+                    bounded = true;
+                }
+                if (max != null) {
+                    predicate.max[i] = Integer.valueOf(max);
+                    bounded = true;
+                }
+            }
+            YearPartitions.Range years = YearPartitions.getRange(conf);
+            if (years != null) {
+                int year = column("year_of_release");
+                predicate.min[year] = predicate.min[year] == null ? years.getFrom() : Math.max(predicate.min[year], years.getFrom());
+                predicate.max[year] = predicate.max[year] == null ? years.getTo() : Math.min(predicate.max[year], years.getTo());
+                bounded = true;
+            }
+            return bounded ? predicate : null;
+        }
+
+        // Indica si el bloque puede tener alguna fila dentro de los limites. Las
+        // filas con null en una columna con limites no los cumplen
+        public boolean mayMatch(BlockStats block) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (min[i] == null && max[i] == null) {
+                    continue;
+                }
+                Integer blockMin = block.getMin().get(i);
+                Integer blockMax = block.getMax().get(i);
+                if (blockMin == null || blockMax == null) {
+                    return false;
+                }
+                if ((min[i] != null && blockMax < min[i]) || (max[i] != null && blockMin > max[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Este archivo contiene la clase CodecBenchmark que serializa el CSV limpio con
+ * distintas combinaciones de codec y tamaño de bloque y compara los resultados.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.mapred.AvroWrapper;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import classes.avro.SpotifyTrack;
+
+// Uso: CodecBenchmark [-D opcion=valor ...] <csv limpio> <directorio temporal> [codecs] [tamaños de bloque]
+// Para cada combinacion serializa el CSV con SpotifySerializer y luego lee todos
+// los registros como lo hacen los trabajos MapReduce. Imprime el tamaño del
+// archivo, el tiempo de escritura y el tiempo de lectura completa. La columna
+// ratio compara el tamaño con una serializacion sin compresion (codec null) del
+// mismo tamaño de bloque, que se hace antes de medir.
+// Las opciones -D (por ejemplo spotify.serializer.threads) se pasan al serializador
+public class CodecBenchmark {
+
+    private static final String DEFAULT_CODECS = "null,snappy,deflate-1,deflate-6,zstandard-1,zstandard-3,xz-6";
+    private static final String DEFAULT_SYNC_INTERVALS = "65536,1048576";
+
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        if (args.length < 2) {
+            System.out.println("Usage: CodecBenchmark [-D opcion=valor ...] <csv path> <work dir> [codecs] [sync intervals]");
+            System.exit(1);
+        }
+        String[] codecs = (args.length > 2 ? args[2] : DEFAULT_CODECS).split(",");
+        String[] syncIntervals = (args.length > 3 ? args[3] : DEFAULT_SYNC_INTERVALS).split(",");
+        Path workDir = new Path(args[1]);
+        FileSystem fs = workDir.getFileSystem(conf);
+
+        conf.set(SpotifySerializer.INPUT_KEY, args[0]);
+        conf.setLong(SpotifySerializer.PROGRESS_KEY, 0);
+        //Se valida cada codec antes de empezar para no fallar a mitad de la prueba
+        for (String codec : codecs) {
+            SpotifySerializer.parseCodec(codec);
+        }
+
+        //Se serializa sin compresion con cada tamaño de bloque para tener la base
+        //de la columna ratio. La primera de estas corridas sirve de calentamiento
+        Map<String, Long> baselines = new HashMap<>();
+        for (String syncInterval : syncIntervals) {
+            Path baseline = new Path(workDir, "baseline_" + syncInterval);
+            conf.set(SpotifySerializer.OUTPUT_KEY, baseline.toString());
+            conf.set(SpotifySerializer.CODEC_KEY, DataFileConstants.NULL_CODEC);
+            conf.set(SpotifySerializer.SYNC_INTERVAL_KEY, syncInterval);
+            SpotifySerializer.serializer(conf);
+            scan(conf, baseline);
+            baselines.put(syncInterval, dataBytes(fs, baseline));
+            fs.delete(baseline, true);
+        }
+
+        System.out.printf(Locale.ROOT, "%-14s %10s %12s %8s %10s %10s %10s%n",
+            "codec", "bloque", "bytes", "ratio", "escritura", "lectura", "registros");
+        for (String codec : codecs) {
+            for (String syncInterval : syncIntervals) {
+                Path output = new Path(workDir, codec + "_" + syncInterval);
+                conf.set(SpotifySerializer.OUTPUT_KEY, output.toString());
+                conf.set(SpotifySerializer.CODEC_KEY, codec);
+                conf.set(SpotifySerializer.SYNC_INTERVAL_KEY, syncInterval);
+
+                long start = System.nanoTime();
+                SpotifySerializer.serializer(conf);
+                double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+                long bytes = dataBytes(fs, output);
+                long baseline = baselines.get(syncInterval);
+
+                start = System.nanoTime();
+                long records = scan(conf, output);
+                double readSeconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf(Locale.ROOT, "%-14s %10s %12d %8s %9.3fs %9.3fs %10d%n", codec, syncInterval, bytes,
+                    baseline > 0 ? String.format(Locale.ROOT, "%.3f", (double) bytes / baseline) : "-",
+                    writeSeconds, readSeconds, records);
+                fs.delete(output, true);
+            }
+        }
+    }
+
+    // Bytes de todos los archivos de la salida, incluyendo las particiones por año,
+    // las columnas de las partes columnares, los diccionarios y el indice de
+    // bloques. No se cuentan el reporte, el checkpoint ni las filas en cuarentena
+    private static long dataBytes(FileSystem fs, Path output) throws IOException {
+        long bytes = 0;
+        RemoteIterator<LocatedFileStatus> files = fs.listFiles(output, true);
+        while (files.hasNext()) {
+            LocatedFileStatus status = files.next();
+            Path file = status.getPath();
+            String name = file.getName();
+            if (name.equals(SpotifySerializer.REPORT_FILE) || name.equals(SpotifySerializer.CHECKPOINT_FILE)
+                    || file.toString().contains("/" + SpotifySerializer.QUARANTINE_DIR + "/")) {
+                continue;
+            }
+            bytes += status.getLen();
+        }
+        return bytes;
+    }
+
+    // Lee y decodifica todos los registros con SpotifyInputFormat, igual que los
+    // trabajos MapReduce, reutilizando el mismo objeto como AvroRecordReader
+    private static long scan(Configuration conf, Path output) throws IOException {
+        JobConf job = new JobConf(conf);
+        SpotifyInputFormat.configure(job);
+        SpotifyInputFormat.setInputPaths(job, output);
+        SpotifyInputFormat inputFormat = new SpotifyInputFormat();
+        long records = 0;
+        for (InputSplit split : inputFormat.getSplits(job, 1)) {
+            RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> reader =
+                inputFormat.getRecordReader(split, job, Reporter.NULL);
+            try {
+                AvroWrapper<SpotifyTrack> record = reader.createKey();
+                NullWritable ignore = reader.createValue();
+                while (reader.next(record, ignore)) {
+                    records++;
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Este archivo contiene la clase ColumnarFile con el formato columnar de la salida
+ * del serializador: un directorio por parte con un archivo avro por columna.
+ */
+
+package mapreduce;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.mapred.FsInput;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import classes.avro.SpotifyTrack;
+
+// Con -D spotify.serializer.layout=columnar cada parte de la salida (spotify,
+// spotify-part-NNNNN, spotify-delta-NNNNN) es un directorio <parte>.col con un
+// archivo <campo>.avro por cada campo de SpotifyTrack. Todos los archivos tienen
+// la misma cantidad de registros y el registro i de cada columna es la fila i.
+// Un trabajo que declara sus columnas con SpotifyInputFormat.setColumns solo
+// abre y decodifica esos archivos. Como las columnas no tienen los bloques
+// alineados, cada parte se lee completa en un solo split
+public class ColumnarFile {
+
+    public static final String EXT = ".col";
+
+    // Indica si path es el directorio de una parte columnar
+    public static boolean isColumnar(Path path) {
+        return path.getName().endsWith(EXT);
+    }
+
+    // Archivo de la columna dentro del directorio de la parte
+    public static Path column(Path part, String field) {
+        return new Path(part, field + ".avro");
+    }
+
+    // Tamaño total de los archivos de la parte
+    public static long length(Configuration conf, Path part) throws IOException {
+        long length = 0;
+        for (FileStatus status : part.getFileSystem(conf).listStatus(part)) {
+            length += status.getLen();
+        }
+        return length;
+    }
+
+    // Escribe cada campo del registro en el archivo de su columna
+    public static class Writer implements Closeable {
+
+        private final List<DataFileWriter<Object>> columns = new ArrayList<>();
+
+        public Writer(Configuration conf, Path part, Schema schema, CodecFactory codec, int syncInterval)
+                throws IOException {
+            FileSystem fs = part.getFileSystem(conf);
+            fs.mkdirs(part);
+            try {
+                for (Schema.Field field : schema.getFields()) {
+                    DataFileWriter<Object> writer = new DataFileWriter<>(new SpecificDatumWriter<>(field.schema()));
+                    writer.setCodec(codec);
+                    writer.setSyncInterval(syncInterval);
+                    columns.add(writer);
+                    writer.create(field.schema(), fs.create(column(part, field.name())));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public void append(IndexedRecord record) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                columns.get(i).append(record.get(i));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (DataFileWriter<Object> writer : columns) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // Lee las columnas indicadas de una parte en un SpotifyTrack. Los campos que
+    // no se leen quedan en null
+    public static class Reader implements Closeable {
+
+        private final List<DataFileReader<Object>> columns = new ArrayList<>();
+        private final int[] positions;
+        private final SpotifyDictionaries dictionaries;
+        private final long length;
+
+        // Si la parte se escribió con diccionarios, los textos de album, artista y
+        // genero se leen de sus ids, por lo que se agregan esas columnas
+        public Reader(Configuration conf, Path part, List<String> fields, SpotifyDictionaries dictionaries)
+                throws IOException {
+            Schema schema = SpotifyTrack.getClassSchema();
+            List<String> read = new ArrayList<>(fields);
+            if (dictionaries != null) {
+                addId(read, SpotifyDictionaries.ALBUM_NAME, "album_id");
+                addId(read, SpotifyDictionaries.ARTIST_NAME, "artist_id");
+                addId(read, SpotifyDictionaries.GENRE_ID, "genre_code");
+            }
+            this.positions = new int[read.size()];
+            this.dictionaries = dictionaries;
+            this.length = part.getFileSystem(conf).getFileStatus(column(part, read.get(0))).getLen();
+            try {
+                for (int i = 0; i < read.size(); i++) {
+                    Schema.Field field = schema.getField(read.get(i));
+                    positions[i] = field.pos();
+                    columns.add(new DataFileReader<>(new FsInput(column(part, field.name()), conf),
+                                                     new SpecificDatumReader<>(field.schema())));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private static void addId(List<String> fields, String name, String id) {
+            if (fields.contains(name) && !fields.contains(id)) {
+                fields.add(id);
+            }
+        }
+
+        public boolean hasNext() {
+            return columns.get(0).hasNext();
+        }
+
+        // Lee la siguiente fila en reuse (o en un SpotifyTrack nuevo si es null)
+        public SpotifyTrack next(SpotifyTrack reuse) throws IOException {
+            SpotifyTrack track = reuse != null ? reuse : new SpotifyTrack();
+            //Los nombres del registro reutilizado son los Utf8 compartidos de los
+            //diccionarios, asi que se quitan para que la lectura no los sobrescriba
+            if (dictionaries != null) {
+                SpotifyDictionaries.removeNames(track);
+            }
+            for (int i = 0; i < positions.length; i++) {
+                DataFileReader<Object> column = columns.get(i);
+                if (!column.hasNext()) {
+                    throw new IOException("La columna " + track.getSchema().getFields().get(positions[i]).name()
+                        + " tiene menos filas que " + track.getSchema().getFields().get(positions[0]).name());
+                }
+                track.put(positions[i], column.next(track.get(positions[i])));
+            }
+            if (dictionaries != null) {
+                dictionaries.decode(track);
+            }
+            return track;
+        }
+
+        // Fraccion leida de la primera columna
+        public float getProgress() throws IOException {
+            return length == 0 ? 1.0f : Math.min(1.0f, columns.get(0).tell() / (float) length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataFileReader<Object> reader : columns) {
+                reader.close();
+            }
+        }
+    }
+
+    // Escribe en la parte las filas de un archivo avro de registros SpotifyTrack y
+    // borra el archivo. Con particiones por año el serializador escribe cada
+    // particion primero como registros, asi no tiene abiertos a la vez los writers
+    // de todas las columnas de todos los años
+    public static void fromRows(Configuration conf, Path rows, Path part, CodecFactory codec, int syncInterval)
+            throws IOException {
+        try (DataFileReader<SpotifyTrack> reader =
+                 new DataFileReader<>(new FsInput(rows, conf), new SpecificDatumReader<>(SpotifyTrack.class));
+             Writer writer = new Writer(conf, part, SpotifyTrack.getClassSchema(), codec, syncInterval)) {
+            SpotifyTrack track = null;
+            while (reader.hasNext()) {
+                track = reader.next(track);
+                writer.append(track);
+            }
+        }
+        rows.getFileSystem(conf).delete(rows, false);
+    }
+
+    // Une las partes en una sola copiando los bloques de cada columna sin
+    // volver a deserializarlos, y borra las partes
+    public static void merge(Configuration conf, Schema schema, List<Path> parts, Path output,
+                             CodecFactory codec, int syncInterval) throws IOException {
+        FileSystem fs = output.getFileSystem(conf);
+        fs.mkdirs(output);
+        for (Schema.Field field : schema.getFields()) {
+            try (DataFileWriter<Object> writer = new DataFileWriter<>(new SpecificDatumWriter<>(field.schema()))) {
+                writer.setCodec(codec);
+                writer.setSyncInterval(syncInterval);
+                writer.create(field.schema(), fs.create(column(output, field.name())));
+                for (Path part : parts) {
+                    try (DataFileStream<Object> partStream =
+                             new DataFileStream<>(fs.open(column(part, field.name())), new GenericDatumReader<>())) {
+                        writer.appendAllFrom(partStream, false);
+                    }
+                }
+            }
+        }
+        for (Path part : parts) {
+            fs.delete(part, true);
+        }
+    }
+}
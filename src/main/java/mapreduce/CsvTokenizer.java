@@ -0,0 +1,314 @@
+/**
+ * Este archivo contiene la clase CsvTokenizer que separa una linea CSV en campos
+ * trabajando directamente sobre los bytes UTF-8, sin decodificar la linea a String.
+ */
+
+package mapreduce;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.io.Text;
+
+// Tokenizador de lineas CSV que solo guarda el inicio y el fin de cada campo
+// dentro del buffer original. Los campos numericos se convierten desde los bytes
+// y solo se crean Strings para las columnas de texto que se pidan.
+// Sigue las mismas reglas que SpotifyParser.parseCSVLine: una coma fuera de
+// comillas separa campos y las comillas se eliminan del valor.
+// Una instancia se reutiliza para todas las lineas y no es thread-safe.
+public class CsvTokenizer {
+
+    // Potencias de 10 representables exactamente como float
+    private static final float[] FLOAT_POW10 = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    // Mayor mantisa que un float representa sin perder precision (2^24)
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+
+    private byte[] bytes;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    // Indica si el campo tiene comillas que hay que eliminar
+    private boolean[] quoted = new boolean[32];
+    private int count;
+
+    // Separa la linea guardada en un Text de Hadoop (el buffer no se copia)
+    public int tokenize(Text line) {
+        return tokenize(line.getBytes(), 0, line.getLength());
+    }
+
+    // Separa los bytes [offset, offset + length) en campos y retorna la cantidad
+    public int tokenize(byte[] buffer, int offset, int length) {
+        bytes = buffer;
+        count = 0;
+        int end = offset + length;
+        int fieldStart = offset;
+        boolean inQuotes = false;
+        boolean hasQuotes = false;
+
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '"') {
+                inQuotes = !inQuotes;
+                hasQuotes = true;
+            } else if (b == ',' && !inQuotes) {
+                addField(fieldStart, i, hasQuotes);
+                fieldStart = i + 1;
+                hasQuotes = false;
+            }
+        }
+        //Se añade el ultimo campo
+        addField(fieldStart, end, hasQuotes);
+        return count;
+    }
+
+    private void addField(int start, int end, boolean hasQuotes) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            quoted = Arrays.copyOf(quoted, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        quoted[count] = hasQuotes;
+        count++;
+    }
+
+    public int getFieldCount() {
+        return count;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    // Posicion del primer byte del campo en el buffer
+    public int getStart(int field) {
+        checkField(field);
+        return starts[field];
+    }
+
+    // Longitud en bytes del campo (incluyendo comillas si las tiene)
+    public int getLength(int field) {
+        checkField(field);
+        return ends[field] - starts[field];
+    }
+
+    public boolean isEmpty(int field) {
+        checkField(field);
+        if (quoted[field]) {
+            // Un campo que solo tiene comillas queda vacio al quitarlas
+            for (int i = starts[field]; i < ends[field]; i++) {
+                if (bytes[i] != '"') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return starts[field] == ends[field];
+    }
+
+    // Compara el campo con un texto ASCII sin crear un String
+    public boolean fieldEquals(int field, String ascii) {
+        checkField(field);
+        if (quoted[field]) {
+            return getString(field).equals(ascii);
+        }
+        int length = ends[field] - starts[field];
+        if (length != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[starts[field] + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Materializa el campo como String (solo para las columnas de texto)
+    public String getString(int field) {
+        checkField(field);
+        int start = starts[field];
+        int end = ends[field];
+        if (!quoted[field]) {
+            return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        }
+        // Camino lento: se copian los bytes sin las comillas
+        byte[] unquoted = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != '"') {
+                unquoted[length++] = bytes[i];
+            }
+        }
+        return new String(unquoted, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Copia los bytes del campo en un Utf8 que se reutiliza entre lineas, asi las
+    // columnas de texto se pueden escribir en Avro sin crear un String por fila
+    public Utf8 getUtf8(int field, Utf8 reuse) {
+        checkField(field);
+        int start = starts[field];
+        int end = ends[field];
+        if (!quoted[field]) {
+            reuse.setByteLength(end - start);
+            System.arraycopy(bytes, start, reuse.getBytes(), 0, end - start);
+            return reuse;
+        }
+        //Se copian los bytes sin las comillas
+        reuse.setByteLength(end - start);
+        byte[] target = reuse.getBytes();
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != '"') {
+                target[length++] = bytes[i];
+            }
+        }
+        return reuse.setByteLength(length);
+    }
+
+    // Retorna la constante de values cuyo nombre es igual al campo. Si ninguna
+    // coincide lanza IllegalArgumentException, igual que Enum.valueOf
+    public <E extends Enum<E>> E getEnum(int field, E[] values) {
+        for (E value : values) {
+            if (fieldEquals(field, value.name())) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("No es un simbolo valido: \"" + getString(field) + "\"");
+    }
+
+    // Convierte el campo a int con las mismas reglas que Integer.parseInt
+    public int getInt(int field) {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+        }
+        return (int) value;
+    }
+
+    // Convierte el campo a long con las mismas reglas que Long.parseLong
+    public long getLong(int field) {
+        return getLong(field, 0);
+    }
+
+    // Convierte a long el campo sin sus ultimos trimEnd bytes (por ejemplo para
+    // pasar un epoch en milisegundos a segundos quitando 3 digitos)
+    public long getLong(int field, int trimEnd) {
+        checkField(field);
+        if (quoted[field]) {
+            String value = getString(field);
+            return Long.parseLong(value.substring(0, Math.max(0, value.length() - trimEnd)));
+        }
+        int i = starts[field];
+        int end = Math.max(i, ends[field] - trimEnd);
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            // Vacio, solo signo o demasiados digitos: se delega en Long.parseLong
+            // que lanza la excepcion o maneja los valores limite
+            return Long.parseLong(new String(bytes, starts[field], end - starts[field], StandardCharsets.UTF_8));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Convierte el campo a float. Los valores con forma [signo]digitos[.digitos][e[signo]digitos]
+    // cuya mantisa y exponente caben en un float se calculan directamente desde
+    // los bytes con una sola operacion, que redondea igual que Float.parseFloat.
+    // El resto de los casos se delega en Float.parseFloat
+    public float getFloat(int field) {
+        checkField(field);
+        if (quoted[field]) {
+            return Float.parseFloat(getString(field));
+        }
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                if (digits > 18) {
+                    return Float.parseFloat(getString(field));
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot) {
+                    exponent--;
+                }
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return Float.parseFloat(getString(field));
+        }
+        if (i < end) {
+            // Solo se acepta un exponente al final del campo
+            if (bytes[i] != 'e' && bytes[i] != 'E') {
+                return Float.parseFloat(getString(field));
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            if (i == end || end - i > 3) {
+                return Float.parseFloat(getString(field));
+            }
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Float.parseFloat(getString(field));
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (mantissa > MAX_EXACT_FLOAT_MANTISSA || exponent < -10 || exponent > 10) {
+            return Float.parseFloat(getString(field));
+        }
+        // La mantisa y la potencia de 10 son exactas como float, asi que una
+        // sola multiplicacion o division da el resultado correctamente redondeado
+        float value = exponent >= 0
+            ? (float) mantissa * FLOAT_POW10[exponent]
+            : (float) mantissa / FLOAT_POW10[-exponent];
+        return negative ? -value : value;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= count) {
+            throw new ArrayIndexOutOfBoundsException("Index " + field + " out of bounds for length " + count);
+        }
+    }
+}
@@ -19,11 +19,13 @@ import org.apache.avro.mapred.Pair;
 
 import classes.avro.DayPublication;
 import classes.avro.DayValue;
+import classes.avro.GenreCount;
+import classes.avro.GenreProfile;
 import classes.avro.MonthPublication;
 import classes.avro.MonthValue;
 import classes.avro.MonthlyPublicationRanking;
 import classes.avro.PopularityAnalysis;
-import classes.avro.SongsFeatures;
+import classes.avro.SongsFeaturesSummary;
 import classes.avro.TypeValue;
 import classes.avro.WeeklyAlbumReleases;
 import classes.avro.YearDaySummary;
@@ -117,11 +119,11 @@ public class DeserializationData {
                 StringBuilder daysOfWeekString = new StringBuilder("[");
                 for (GenericRecord dayAlbumData : daysOfWeek) {
                     String day = dayAlbumData.get("day").toString();
-                    int danceability = (int) dayAlbumData.get("danceability");
+                    int albumCount = (int) dayAlbumData.get("albumCount");
                     List<CharSequence> albumList = (List<CharSequence>) dayAlbumData.get("albumList");
 
                     // Formatear la información de cada día
-                    daysOfWeekString.append(String.format("\n{ Day: %s,\n danceability: %d,\n AlbumList: %s}, ",day, danceability, albumList.toString()));
+                    daysOfWeekString.append(String.format("\n{ Day: %s,\n AlbumCount: %d,\n AlbumList: %s}, ",day, albumCount, albumList.toString()));
                 }
 
                 if (daysOfWeekString.length() > 1) {
@@ -419,12 +421,12 @@ public class DeserializationData {
         return records;
     }
 
-    public static List<String> getPairIntSongsFeatures(String avroFilePath) {
+    public static List<String> getPairIntSongsFeaturesSummary(String avroFilePath) {
         List<String> records = new ArrayList<>();
 
         try {
             // Definir el esquema del par
-            Schema schema = Pair.getPairSchema(Schema.create(Schema.Type.INT),  SongsFeatures.getClassSchema());
+            Schema schema = Pair.getPairSchema(Schema.create(Schema.Type.INT),  SongsFeaturesSummary.getClassSchema());
 
             GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
             File avroFile = new File(avroFilePath);
@@ -432,38 +434,76 @@ public class DeserializationData {
             // Leer el archivo Avro
             FileReader<GenericRecord> fileReader = DataFileReader.openReader(avroFile, datumReader);
 
-            // Iterar sobre los registros
+            // Iterar sobre los registros. Cada registro tiene el año, la cantidad de
+            // canciones y el promedio y la desviacion de cada caracteristica
             while (fileReader.hasNext()) {
                 GenericRecord record = fileReader.next();
 
-                // Extraer la key (key)
-                int key = (int) record.get("key");
+                // Añadir el par como cadena a la lista
+                records.add(record.toString());
+                records.add("\n");
+            }
 
-                // Extraer el valor (SongsFeatures)
-                GenericRecord valueRecord = (GenericRecord) record.get("value");
+            fileReader.close(); // Cerrar el lector
 
-                int explicit = (int) valueRecord.get("explicit");
-                float acousticness = (float) valueRecord.get("acousticness");
-                float danceability = (float) valueRecord.get("danceability");
-                float energy = (float) valueRecord.get("energy");
-                float instrumentalness = (float) valueRecord.get("instrumentalness");
-                int keySong = (int) valueRecord.get("key");
-                float liveness = (float) valueRecord.get("liveness");
-                float loudness = (float) valueRecord.get("loudness");
-                float speechiness = (float) valueRecord.get("speechiness");
-                float tempo = (float)  valueRecord.get("tempo");
-                int time_signature = (int) valueRecord.get("time_signature");
-                float valence = (float) valueRecord.get("valence");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-                // Crear un objeto de Pair
-                Pair<Integer, SongsFeatures> pair = new Pair<>(
-                    key,
-                    new SongsFeatures(explicit, acousticness, danceability, energy, instrumentalness, keySong, liveness, loudness, speechiness, tempo, time_signature, valence)
-                );
+        return records;
+    }
+
+    public static List<String> getPairStringGenreProfileRecords(String avroFilePath) {
+        List<String> records = new ArrayList<>();
+
+        try {
+            // Definir el esquema del par
+            Schema schema = Pair.getPairSchema(Schema.create(Schema.Type.STRING),  GenreProfile.getClassSchema());
+
+            GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
+            File avroFile = new File(avroFilePath);
+
+            // Leer el archivo Avro
+            FileReader<GenericRecord> fileReader = DataFileReader.openReader(avroFile, datumReader);
+
+            // Iterar sobre los registros. Cada registro tiene la decada, el genero,
+            // la cantidad de canciones y el promedio de cada caracteristica
+            while (fileReader.hasNext()) {
+                GenericRecord record = fileReader.next();
 
                 // Añadir el par como cadena a la lista
-                records.add(pair.toString());
-                records.add("\n");
+                records.add(record.toString());
+            }
+
+            fileReader.close(); // Cerrar el lector
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return records;
+    }
+
+    public static List<String> getPairIntGenreCountRecords(String avroFilePath) {
+        List<String> records = new ArrayList<>();
+
+        try {
+            // Definir el esquema del par
+            Schema schema = Pair.getPairSchema(Schema.create(Schema.Type.INT),  GenreCount.getClassSchema());
+
+            GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
+            File avroFile = new File(avroFilePath);
+
+            // Leer el archivo Avro
+            FileReader<GenericRecord> fileReader = DataFileReader.openReader(avroFile, datumReader);
+
+            // Iterar sobre los registros. Cada registro tiene el año, el genero y
+            // su cantidad de canciones
+            while (fileReader.hasNext()) {
+                GenericRecord record = fileReader.next();
+
+                // Añadir el par como cadena a la lista
+                records.add(record.toString());
             }
 
             fileReader.close(); // Cerrar el lector
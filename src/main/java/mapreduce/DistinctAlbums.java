@@ -0,0 +1,218 @@
+/**
+ * Este archivo contiene la clase DistinctAlbums con los modos aproximado y con
+ * orden secundario de los trabajos que cuentan albumes distintos por año.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.mapred.AvroCollector;
+import org.apache.avro.mapred.AvroJob;
+import org.apache.avro.mapred.AvroMapper;
+import org.apache.avro.mapred.AvroReducer;
+import org.apache.avro.mapred.Pair;
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+
+import classes.avro.AlbumKey;
+import classes.avro.AlbumSketch;
+import classes.avro.SpotifyTrack;
+
+// Con -D spotify.albums.distinct=hll, AlbumCounterMapRed, AlbumsPerDay,
+// AlbumTypes y AlbumsPerWeekdayPerYear no juntan los nombres de los albumes de
+// cada año en un HashSet, sino que cuentan con un sketch HyperLogLog por año y
+// casilla (el dia, el tipo o el dia de la semana). Cada mapper envia un solo
+// sketch por año y casilla al terminar, el combiner y el reducer los unen y el
+// reducer escribe la estimacion. La memoria y el shuffle dependen de
+// spotify.albums.distinct.precision (2^precision bytes por sketch) y no de la
+// cantidad de albumes. Con spotify.albums.distinct=sort el conteo es exacto y
+// el reducer tampoco guarda los nombres: con AvroSecondarySort recibe los
+// albumes de cada año ordenados por casilla y nombre y cuenta los cambios. En el
+// modo hll los resultados en texto empiezan con una linea con el error estandar
+// relativo de las estimaciones (errorLine)
+public class DistinctAlbums {
+
+    public static final String MODE_KEY = "spotify.albums.distinct";
+    public static final String PRECISION_KEY = "spotify.albums.distinct.precision";
+    public static final int DEFAULT_PRECISION = 12;
+
+    // Indica si el trabajo cuenta con HyperLogLog (hll) en lugar de contar exacto
+    public static boolean isApproximate(Configuration conf) {
+        return "hll".equals(mode(conf));
+    }
+
+    // Indica si el trabajo cuenta exacto con orden secundario (sort): el reducer
+    // recibe los albumes de cada año ordenados y cuenta los distintos sin guardarlos
+    public static boolean isSorted(Configuration conf) {
+        return "sort".equals(mode(conf));
+    }
+
+    private static String mode(Configuration conf) {
+        String mode = conf.getTrimmed(MODE_KEY, "exact");
+        if (!"exact".equals(mode) && !"hll".equals(mode) && !"sort".equals(mode)) {
+            throw new IllegalArgumentException("Modo invalido en " + MODE_KEY + ": " + mode + " (exact, hll o sort)");
+        }
+        return mode;
+    }
+
+    // Linea con el error de las estimaciones que se agrega al principio de los
+    // resultados en texto, o null si el trabajo no usa el modo aproximado
+    public static String errorLine(Configuration conf) {
+        if (!isApproximate(conf)) {
+            return null;
+        }
+        int precision = conf.getInt(PRECISION_KEY, DEFAULT_PRECISION);
+        return String.format(Locale.ROOT, "# Albumes distintos aproximados con HyperLogLog de precision %d: "
+            + "error estandar relativo %.2f%%", precision, 100 * HyperLogLog.relativeError(precision));
+    }
+
+    // Configura el mapper, el combiner y el reducer del modo aproximado e imprime
+    // el error de las estimaciones
+    public static void configure(JobConf conf, Class<? extends SketchMapper> mapper,
+                                 Class<? extends SketchReducer<?>> reducer) {
+        HyperLogLog.checkPrecision(conf.getInt(PRECISION_KEY, DEFAULT_PRECISION));
+        AvroJob.setMapperClass(conf, mapper);
+        AvroJob.setCombinerClass(conf, SketchCombiner.class);
+        AvroJob.setReducerClass(conf, reducer);
+        AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), AlbumSketch.getClassSchema()));
+        System.out.println(errorLine(conf));
+    }
+
+    // Configura el mapper y el reducer del modo con orden secundario. La clave de
+    // salida del map es AlbumKey (año, casilla y album), se agrupa por año y el
+    // valor repite lo que el reducer necesita de la clave. El combiner deja un
+    // solo valor por cada album repetido en el mismo mapper
+    public static <V> void configureSorted(JobConf conf,
+                                           Class<? extends AvroMapper<SpotifyTrack, Pair<AlbumKey, V>>> mapper,
+                                           Class<? extends AvroReducer<AlbumKey, V, ?>> reducer, Schema valueSchema) {
+        AvroJob.setMapperClass(conf, mapper);
+        AvroJob.setCombinerClass(conf, AvroSecondarySort.DistinctCombiner.class);
+        AvroJob.setReducerClass(conf, reducer);
+        AvroSecondarySort.configure(conf, AlbumKey.getClassSchema(), valueSchema, 1);
+    }
+
+    // Cuenta los albumes distintos cuando llegan ordenados por nombre (modo sort):
+    // solo guarda el ultimo nombre y lo compara con el siguiente. Se puede
+    // reutilizar entre casillas y llamadas a reduce() con clear()
+    public static class SortedAlbums {
+
+        private final Utf8 previous = new Utf8();
+        private int count;
+
+        // Indica si el album es distinto del anterior, como Set.add
+        public boolean add(CharSequence album) {
+            Utf8 name = album instanceof Utf8 ? (Utf8) album : new Utf8(album.toString());
+            if (count > 0 && previous.equals(name)) {
+                return false;
+            }
+            previous.set(name);
+            count++;
+            return true;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public void clear() {
+            count = 0;
+        }
+    }
+
+    // Construye los sketches de todas las filas del split y los envia en close()
+    public abstract static class SketchMapper extends AvroMapper<SpotifyTrack, Pair<Integer, AlbumSketch>> {
+
+        // Sketch de cada año (32 bits altos) y casilla (32 bits bajos)
+        private final Map<Long, HyperLogLog> sketches = new HashMap<>();
+        private AvroCollector<Pair<Integer, AlbumSketch>> collector;
+        private int precision;
+
+        @Override
+        public void configure(JobConf job) {
+            precision = job.getInt(PRECISION_KEY, DEFAULT_PRECISION);
+        }
+
+        // Año de la fila, que es la clave de salida, o null si la fila no se cuenta
+        protected abstract Integer year(SpotifyTrack track);
+
+        // Casilla de la fila dentro del año, o -1 si la fila no se cuenta
+        protected abstract int slot(SpotifyTrack track);
+
+        @Override
+        public void map(SpotifyTrack track, AvroCollector<Pair<Integer, AlbumSketch>> collector, Reporter reporter)
+                throws IOException {
+            CharSequence albumName = track.getAlbumName();
+            Integer year = year(track);
+            int slot = slot(track);
+            if (albumName == null || year == null || slot < 0) {
+                return;
+            }
+            this.collector = collector;
+            long key = (long) year << 32 | slot;
+            HyperLogLog sketch = sketches.get(key);
+            if (sketch == null) {
+                sketch = new HyperLogLog(precision);
+                sketches.put(key, sketch);
+            }
+            sketch.add(albumName);
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Map.Entry<Long, HyperLogLog> entry : sketches.entrySet()) {
+                long key = entry.getKey();
+                collector.collect(new Pair<Integer, AlbumSketch>((int) (key >> 32),
+                    new AlbumSketch((int) key, entry.getValue().toByteBuffer())));
+            }
+        }
+    }
+
+    // Une los sketches de cada casilla del año
+    private static SortedMap<Integer, HyperLogLog> merge(Iterable<AlbumSketch> values) {
+        SortedMap<Integer, HyperLogLog> slots = new TreeMap<>();
+        for (AlbumSketch value : values) {
+            HyperLogLog sketch = slots.get(value.getSlot());
+            if (sketch == null) {
+                slots.put(value.getSlot(), HyperLogLog.fromByteBuffer(value.getRegisters()));
+            } else {
+                sketch.merge(value.getRegisters());
+            }
+        }
+        return slots;
+    }
+
+    public static class SketchCombiner extends AvroReducer<Integer, AlbumSketch, Pair<Integer, AlbumSketch>> {
+        @Override
+        public void reduce(Integer key, Iterable<AlbumSketch> values,
+                           AvroCollector<Pair<Integer, AlbumSketch>> collector, Reporter reporter) throws IOException {
+            for (Map.Entry<Integer, HyperLogLog> slot : merge(values).entrySet()) {
+                collector.collect(new Pair<Integer, AlbumSketch>(key,
+                    new AlbumSketch(slot.getKey(), slot.getValue().toByteBuffer())));
+            }
+        }
+    }
+
+    // Reducer del modo aproximado: el trabajo escribe sus registros de salida a
+    // partir de los sketches ya unidos de cada casilla del año
+    public abstract static class SketchReducer<OUT> extends AvroReducer<Integer, AlbumSketch, OUT> {
+
+        protected abstract void emit(Integer year, SortedMap<Integer, HyperLogLog> slots, AvroCollector<OUT> collector)
+            throws IOException;
+
+        @Override
+        public void reduce(Integer key, Iterable<AlbumSketch> values, AvroCollector<OUT> collector, Reporter reporter)
+                throws IOException {
+            emit(key, merge(values), collector);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Este archivo contiene la clase DistinctIds que cuenta los ids distintos que
+ * recibe un reducer sin crear un Integer por valor.
+ */
+
+package mapreduce;
+
+import java.util.Arrays;
+
+// Conjunto de int con direccionamiento abierto (sondeo lineal): cada id se guarda
+// una sola vez, asi la memoria depende de los ids distintos y no de los valores
+// recibidos, y count() no tiene que ordenar nada. La tabla crece al doble cuando
+// pasa de la mitad llena. Se puede reutilizar entre llamadas a reduce() con
+// clear(), que no recorre la tabla: cada casilla guarda la generacion en la que
+// se uso y clear() solo avanza la generacion
+public class DistinctIds {
+
+    private int[] ids = new int[64];
+    // Una casilla esta ocupada si su generacion es la actual
+    private int[] generations = new int[64];
+    private int generation = 1;
+    private int size;
+
+    public void add(int id) {
+        int mask = ids.length - 1;
+        int slot = mix(id) & mask;
+        while (generations[slot] == generation) {
+            if (ids[slot] == id) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        generations[slot] = generation;
+        size++;
+        if (size * 2 > ids.length) {
+            grow();
+        }
+    }
+
+    public int count() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            //Si la generacion da la vuelta se vacia la tabla de verdad
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    private void grow() {
+        int[] oldIds = ids;
+        int[] oldGenerations = generations;
+        ids = new int[oldIds.length * 2];
+        generations = new int[oldIds.length * 2];
+        int mask = ids.length - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldGenerations[i] == generation) {
+                int slot = mix(oldIds[i]) & mask;
+                while (generations[slot] == generation) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                generations[slot] = generation;
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        key *= 0x9E3779B9;
+        return key ^ (key >>> 16);
+    }
+}
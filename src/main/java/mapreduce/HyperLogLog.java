@@ -0,0 +1,187 @@
+/**
+ * Este archivo contiene la clase HyperLogLog que estima la cantidad de textos
+ * distintos con memoria fija, para contar albumes sin guardar sus nombres.
+ */
+
+package mapreduce;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.avro.util.Utf8;
+
+// Cada texto se convierte en un hash de 64 bits: los primeros precision bits
+// eligen un registro y el registro guarda la mayor posicion del primer 1 en el
+// resto del hash. Dos sketches con la misma precision se unen con el maximo de
+// cada registro, asi que se pueden construir en los mappers y unir en los
+// combiners y reducers. El error estandar relativo es 1.04 / sqrt(2^precision).
+// Serializado, el primer byte tiene la precision y, si pocos registros no son 0,
+// solo se escriben esos registros (posicion de 2 bytes y valor) en lugar de todos
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+    // Marca del primer byte cuando solo se escriben los registros que no son 0
+    private static final int SPARSE = 0x80;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        this.precision = checkPrecision(precision);
+        this.registers = new byte[1 << precision];
+    }
+
+    // Retorna la precision si esta entre MIN_PRECISION y MAX_PRECISION, si no
+    // lanza IllegalArgumentException
+    public static int checkPrecision(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("La precision de HyperLogLog debe estar entre " + MIN_PRECISION
+                + " y " + MAX_PRECISION + ": " + precision);
+        }
+        return precision;
+    }
+
+    // Lee un sketch escrito con toByteBuffer
+    public static HyperLogLog fromByteBuffer(ByteBuffer buffer) {
+        HyperLogLog sketch = new HyperLogLog(buffer.get(buffer.position()) & 0xff & ~SPARSE);
+        sketch.merge(buffer);
+        return sketch;
+    }
+
+    public ByteBuffer toByteBuffer() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        if (3 * used >= registers.length) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + registers.length);
+            buffer.put((byte) precision).put(registers);
+            buffer.flip();
+            return buffer;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 3 * used);
+        buffer.put((byte) (precision | SPARSE));
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public void add(CharSequence value) {
+        if (value instanceof Utf8) {
+            Utf8 utf8 = (Utf8) value;
+            addHash(hash(utf8.getBytes(), utf8.getByteLength()));
+        } else {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            addHash(hash(bytes, bytes.length));
+        }
+    }
+
+    private void addHash(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        //Posicion del primer 1 en los bits que quedan, 64 - precision + 1 si son todos 0
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    // Une other en este sketch
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("No se pueden unir sketches de precision " + precision
+                + " y " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    // Une un sketch escrito con toByteBuffer sin crear otro sketch
+    public void merge(ByteBuffer buffer) {
+        int position = buffer.position();
+        int header = buffer.get(position) & 0xff;
+        if ((header & ~SPARSE) != precision) {
+            throw new IllegalArgumentException("No se pueden unir sketches de precision " + precision
+                + " y " + (header & ~SPARSE));
+        }
+        if ((header & SPARSE) == 0) {
+            if (buffer.remaining() != 1 + registers.length) {
+                throw new IllegalArgumentException("Cantidad de registros de HyperLogLog invalida: "
+                    + (buffer.remaining() - 1));
+            }
+            for (int i = 0; i < registers.length; i++) {
+                byte register = buffer.get(position + 1 + i);
+                if (register > registers[i]) {
+                    registers[i] = register;
+                }
+            }
+            return;
+        }
+        for (int offset = position + 1; offset + 3 <= buffer.limit(); offset += 3) {
+            int i = buffer.getShort(offset) & 0xffff;
+            byte register = buffer.get(offset + 2);
+            if (register > registers[i]) {
+                registers[i] = register;
+            }
+        }
+    }
+
+    // Cantidad estimada de textos distintos. Con pocos textos (muchos registros
+    // en 0) se usa el conteo lineal, que es mas preciso en ese rango
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * (double) m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log(m / (double) zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // Error estandar relativo de la estimacion
+    public static double relativeError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // FNV-1a de 64 bits seguido de la mezcla de splitmix64, para que los bits
+    // altos (que eligen el registro) dependan de todos los bytes
+    private static long hash(byte[] bytes, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Este archivo contiene la clase IngestCheckpoint que guarda hasta donde se
+ * serializó el CSV, para que la siguiente ejecucion solo procese las filas nuevas.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+// El checkpoint guarda la ruta del CSV, el byte donde terminó la ultima linea
+// procesada y dos huellas del archivo: el CRC32 de los primeros 64 KB y el de
+// los 64 KB anteriores a ese byte. Si el archivo solo creció agregando lineas al
+// final, ambas huellas siguen iguales y se puede continuar desde el offset.
+// Si el archivo se reescribió, las huellas cambian y hay que serializarlo completo
+public class IngestCheckpoint {
+
+    // Tamaño de la ventana usada para cada huella
+    private static final int WINDOW = 64 * 1024;
+
+    private final String source;
+    private final long offset;
+    // Lineas del CSV antes del offset, para numerar las lineas de las partes incrementales
+    private final long lines;
+    private final long headCrc;
+    private final long tailCrc;
+    // Numero de la siguiente parte incremental (spotify-delta-NNNNN.avro)
+    private final int nextDelta;
+
+    private IngestCheckpoint(String source, long offset, long lines, long headCrc, long tailCrc, int nextDelta) {
+        this.source = source;
+        this.offset = offset;
+        this.lines = lines;
+        this.headCrc = headCrc;
+        this.tailCrc = tailCrc;
+        this.nextDelta = nextDelta;
+    }
+
+    // Calcula el checkpoint del archivo input procesado hasta offset (lines lineas)
+    public static IngestCheckpoint compute(Configuration conf, Path input, long offset, long lines, int nextDelta)
+            throws IOException {
+        FileSystem fs = input.getFileSystem(conf);
+        try (FSDataInputStream in = fs.open(input)) {
+            long headLength = Math.min(WINDOW, offset);
+            long tailStart = Math.max(0, offset - WINDOW);
+            return new IngestCheckpoint(input.toString(), offset, lines, crc(in, 0, headLength),
+                                        crc(in, tailStart, offset - tailStart), nextDelta);
+        }
+    }
+
+    // Lee el checkpoint guardado, o retorna null si no existe
+    public static IngestCheckpoint load(Configuration conf, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        if (!fs.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = fs.open(path)) {
+            properties.load(in);
+        }
+        return new IngestCheckpoint(properties.getProperty("source"),
+                                    Long.parseLong(properties.getProperty("offset")),
+                                    Long.parseLong(properties.getProperty("lines", "0")),
+                                    Long.parseLong(properties.getProperty("head.crc")),
+                                    Long.parseLong(properties.getProperty("tail.crc")),
+                                    Integer.parseInt(properties.getProperty("next.delta", "0")));
+    }
+
+    public void save(Configuration conf, Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("source", source);
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("lines", Long.toString(lines));
+        properties.setProperty("head.crc", Long.toString(headCrc));
+        properties.setProperty("tail.crc", Long.toString(tailCrc));
+        properties.setProperty("next.delta", Integer.toString(nextDelta));
+        FileSystem fs = path.getFileSystem(conf);
+        try (OutputStream out = fs.create(path, true)) {
+            properties.store(out, "Checkpoint de SpotifySerializer");
+        }
+    }
+
+    // Indica si input es el mismo archivo del checkpoint, con las mismas lineas
+    // hasta offset y posiblemente otras nuevas despues. Tambien se exige que el
+    // byte anterior al offset sea un salto de linea, asi la primera fila nueva
+    // empieza justo en el offset
+    public boolean matches(Configuration conf, Path input) throws IOException {
+        if (!input.toString().equals(source)) {
+            return false;
+        }
+        FileSystem fs = input.getFileSystem(conf);
+        if (fs.getFileStatus(input).getLen() < offset) {
+            return false;
+        }
+        IngestCheckpoint current = compute(conf, input, offset, lines, nextDelta);
+        if (current.headCrc != headCrc || current.tailCrc != tailCrc) {
+            return false;
+        }
+        if (offset == 0) {
+            return true;
+        }
+        try (FSDataInputStream in = fs.open(input)) {
+            in.seek(offset - 1);
+            return in.read() == '\n';
+        }
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public int getNextDelta() {
+        return nextDelta;
+    }
+
+    private static long crc(FSDataInputStream in, long start, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[(int) Math.min(WINDOW, Math.max(length, 1))];
+        in.seek(start);
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("Fin de archivo inesperado al calcular la huella del CSV");
+            }
+            crc.update(buffer, 0, read);
+            remaining -= read;
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Este archivo contiene la clase IngestMetrics que acumula las metricas de la
+ * serializacion del CSV: filas, bytes, valores nulos y fallidos por columna y
+ * el tiempo de cada etapa.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+// Cada hilo de la serializacion usa su propia instancia, por lo que los contadores
+// son campos simples sin sincronizacion. Cada cierto numero de filas el hilo
+// publica sus totales en campos volatile para que el hilo de progreso los lea.
+// Al terminar, las instancias de todos los hilos se unen con merge()
+public class IngestMetrics {
+
+    // Etapas del procesamiento de cada linea
+    public enum Stage {
+        READ, TOKENIZE, CONVERT, ENCODE, FLUSH, MERGE
+    }
+
+    // Cada cuantas filas se publican los contadores para el progreso
+    private static final int PUBLISH_EVERY = 1024;
+
+    private final String[] columns;
+    private final long[] nulls;
+    private final long[] parseFailures;
+    private final long[] stageNanos = new long[Stage.values().length];
+    private long rowsRead;
+    private long rowsWritten;
+    private long rowsDropped;
+    private long linesSkipped;
+    private long bytesRead;
+    private final long[] quarantined = new long[QuarantineWriter.Reason.values().length];
+
+    private volatile long publishedRows;
+    private volatile long publishedBytes;
+
+    public IngestMetrics(String[] columns) {
+        this.columns = columns;
+        this.nulls = new long[columns.length];
+        this.parseFailures = new long[columns.length];
+    }
+
+    // Crea las metricas con una columna por cada campo del esquema
+    public static IngestMetrics forSchema(Schema schema) {
+        List<Schema.Field> fields = schema.getFields();
+        String[] columns = new String[fields.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = fields.get(i).name();
+        }
+        return new IngestMetrics(columns);
+    }
+
+    public void rowRead(long bytes) {
+        rowsRead++;
+        bytesRead += bytes;
+    }
+
+    // Linea leida que no corresponde a una fila (por ejemplo el encabezado)
+    public void skipLine(long bytes) {
+        linesSkipped++;
+        bytesRead += bytes;
+    }
+
+    // Fila que se leyó pero se descartó a proposito (por ejemplo sin valence)
+    public void rowDropped() {
+        rowsDropped++;
+    }
+
+    public void rowWritten() {
+        rowsWritten++;
+        if (rowsWritten % PUBLISH_EVERY == 0) {
+            publish();
+        }
+    }
+
+    // Fila que se envió a la cuarentena en lugar de escribirse
+    public void quarantined(QuarantineWriter.Reason reason) {
+        quarantined[reason.ordinal()]++;
+    }
+
+    public void nullValue(int column) {
+        nulls[column]++;
+    }
+
+    public void parseFailure(int column) {
+        parseFailures[column]++;
+    }
+
+    public void addTime(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] += nanos;
+    }
+
+    // Deja visibles los contadores actuales para el hilo de progreso
+    public void publish() {
+        publishedRows = rowsWritten;
+        publishedBytes = bytesRead;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public long getRowsDropped() {
+        return rowsDropped;
+    }
+
+    // Lineas del CSV recorridas, contando las que no son filas
+    public long getLines() {
+        return rowsRead + linesSkipped;
+    }
+
+    public long getQuarantined() {
+        long total = 0;
+        for (long count : quarantined) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getNulls(int column) {
+        return nulls[column];
+    }
+
+    public long getParseFailures(int column) {
+        return parseFailures[column];
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    // Suma a esta instancia los contadores de otra (por ejemplo de otro hilo)
+    public void merge(IngestMetrics other) {
+        rowsRead += other.rowsRead;
+        rowsWritten += other.rowsWritten;
+        rowsDropped += other.rowsDropped;
+        linesSkipped += other.linesSkipped;
+        bytesRead += other.bytesRead;
+        for (int i = 0; i < columns.length; i++) {
+            nulls[i] += other.nulls[i];
+            parseFailures[i] += other.parseFailures[i];
+        }
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] += other.stageNanos[i];
+        }
+        for (int i = 0; i < quarantined.length; i++) {
+            quarantined[i] += other.quarantined[i];
+        }
+        publish();
+    }
+
+    // Inicia un hilo que imprime cada intervalMs una linea con las filas escritas,
+    // los MB leidos y la velocidad desde la linea anterior. Se detiene con shutdownNow()
+    public static ScheduledExecutorService startProgress(List<IngestMetrics> metrics, long intervalMs) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingest-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long startNanos = System.nanoTime();
+        //Filas y tiempo de la linea anterior
+        long[] previous = {0, startNanos};
+        timer.scheduleAtFixedRate(() -> {
+            long rows = 0;
+            long bytes = 0;
+            for (IngestMetrics m : metrics) {
+                rows += m.publishedRows;
+                bytes += m.publishedBytes;
+            }
+            long now = System.nanoTime();
+            double interval = (now - previous[1]) / 1e9;
+            System.out.println(String.format(Locale.ROOT,
+                "Progreso: %d filas escritas, %.1f MB leidos, %.0f filas/s, %.0f s transcurridos",
+                rows, bytes / 1e6, rate(rows - previous[0], interval), (now - startNanos) / 1e9));
+            previous[0] = rows;
+            previous[1] = now;
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        return timer;
+    }
+
+    // Linea de resumen que se imprime al terminar
+    public String summary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long failures = 0;
+        for (long f : parseFailures) {
+            failures += f;
+        }
+        return String.format(Locale.ROOT,
+            "Ingesta: %d filas leidas, %d escritas, %d descartadas, %d en cuarentena, %.1f MB en %.2f s (%.0f filas/s, %.1f MB/s), %d valores invalidos",
+            rowsRead, rowsWritten, rowsDropped, getQuarantined(), bytesRead / 1e6, seconds, rate(rowsWritten, seconds),
+            rate(bytesRead / 1e6, seconds), failures);
+    }
+
+    // Cantidad por segundo, 0 si no pasó tiempo medible (evita NaN e Infinity,
+    // que no son validos en JSON)
+    private static double rate(double amount, double seconds) {
+        return seconds > 0 ? amount / seconds : 0;
+    }
+
+    // Escribe el reporte final en formato JSON. Los datos de info (rutas, codec, etc.)
+    // se agregan al inicio del objeto. Los tiempos de las etapas se suman entre hilos
+    public void writeJson(Configuration conf, Path path, Map<String, Object> info, long elapsedNanos) throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder json = new StringBuilder("{\n");
+        for (Map.Entry<String, Object> entry : info.entrySet()) {
+            json.append("  ").append(quote(entry.getKey())).append(": ");
+            Object value = entry.getValue();
+            json.append(value instanceof Number || value instanceof Boolean ? value.toString() : quote(String.valueOf(value)));
+            json.append(",\n");
+        }
+        json.append("  \"elapsed_ms\": ").append(elapsedNanos / 1000000).append(",\n");
+        json.append("  \"rows_read\": ").append(rowsRead).append(",\n");
+        json.append("  \"rows_written\": ").append(rowsWritten).append(",\n");
+        json.append("  \"rows_dropped\": ").append(rowsDropped).append(",\n");
+        json.append("  \"rows_quarantined\": ").append(getQuarantined()).append(",\n");
+        json.append("  \"quarantine_reasons\": {");
+        QuarantineWriter.Reason[] reasons = QuarantineWriter.Reason.values();
+        for (int i = 0; i < reasons.length; i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    ").append(quote(reasons[i].name().toLowerCase(Locale.ROOT))).append(": ")
+                .append(quarantined[i]);
+        }
+        json.append("\n  },\n");
+        json.append("  \"bytes_read\": ").append(bytesRead).append(",\n");
+        json.append("  \"rows_per_second\": ").append(String.format(Locale.ROOT, "%.1f", rate(rowsWritten, seconds))).append(",\n");
+        json.append("  \"mb_per_second\": ").append(String.format(Locale.ROOT, "%.3f", rate(bytesRead / 1e6, seconds))).append(",\n");
+        json.append("  \"stages_ms\": {");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    ").append(quote(stages[i].name().toLowerCase(Locale.ROOT))).append(": ")
+                .append(stageNanos[i] / 1000000);
+        }
+        json.append("\n  },\n");
+        json.append("  \"columns\": {");
+        for (int i = 0; i < columns.length; i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    ").append(quote(columns[i])).append(": {\"nulls\": ").append(nulls[i])
+                .append(", \"parse_failures\": ").append(parseFailures[i]).append("}");
+        }
+        json.append("\n  }\n}\n");
+
+        FileSystem fs = path.getFileSystem(conf);
+        try (Writer writer = new OutputStreamWriter(fs.create(path, true), StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Este archivo contiene la clase InputSample con el muestreo determinista de la
+ * entrada de los trabajos MapReduce, para probarlos rapido sobre una fraccion de los datos.
+ */
+
+package mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+// Con -D spotify.input.sample=0.01 los trabajos que leen con SpotifyInputFormat
+// solo reciben cerca del 1% de las filas. Primero se elige cada bloque del
+// archivo avro con probabilidad spotify.input.sample.blocks (por defecto la raiz
+// de la fraccion) y los bloques que no se eligen no se decodifican; despues se
+// elige cada fila de los bloques elegidos con probabilidad fraccion / bloques.
+// Cada decision sale de un hash de spotify.input.sample.seed, el archivo, la
+// posicion del bloque y la fila dentro del bloque, asi que con la misma semilla
+// y la misma entrada se eligen siempre las mismas filas, sin importar los splits
+public class InputSample {
+
+    public static final String FRACTION_KEY = "spotify.input.sample";
+    public static final String BLOCKS_KEY = "spotify.input.sample.blocks";
+    public static final String SEED_KEY = "spotify.input.sample.seed";
+
+    // Las partes columnares no tienen bloques comunes a todas las columnas, asi
+    // que se muestrean en grupos de esta cantidad de filas
+    public static final int COLUMNAR_BLOCK_ROWS = 1024;
+
+    // Contadores del trabajo con los bloques y filas de la muestra
+    public enum Counter { BLOCKS_SAMPLED, BLOCKS_DROPPED, ROWS_SAMPLED }
+
+    private final double blockFraction;
+    private final double rowFraction;
+    private final long seed;
+
+    public InputSample(double fraction, double blockFraction, long seed) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("La fraccion de " + FRACTION_KEY + " debe estar en (0, 1]: " + fraction);
+        }
+        if (!(blockFraction >= fraction && blockFraction <= 1)) {
+            throw new IllegalArgumentException("La fraccion de " + BLOCKS_KEY + " debe estar en [" + fraction
+                + ", 1]: " + blockFraction);
+        }
+        this.blockFraction = blockFraction;
+        this.rowFraction = fraction / blockFraction;
+        this.seed = seed;
+    }
+
+    // Muestra de la configuracion, o null si el trabajo lee todas las filas
+    public static InputSample fromConf(Configuration conf) {
+        String fraction = conf.getTrimmed(FRACTION_KEY);
+        if (fraction == null || fraction.isEmpty()) {
+            return null;
+        }
+        double value = Double.parseDouble(fraction);
+        return new InputSample(value, conf.getDouble(BLOCKS_KEY, Math.sqrt(value)), conf.getLong(SEED_KEY, 0));
+    }
+
+    // Indica si se lee el bloque que empieza en la posicion block del archivo
+    public boolean keepBlock(Path file, long block) {
+        return blockFraction >= 1 || uniform(file, block, -1) < blockFraction;
+    }
+
+    // Indica si se usa la fila row (contando desde 0) de un bloque elegido
+    public boolean keepRow(Path file, long block, long row) {
+        return rowFraction >= 1 || uniform(file, block, row) < rowFraction;
+    }
+
+    // Valor en [0, 1) que solo depende de la semilla, el archivo, el bloque y la fila.
+    // El archivo se identifica por su nombre y el de su directorio (la particion)
+    private double uniform(Path file, long block, long row) {
+        String name = file.getParent() == null ? file.getName() : file.getParent().getName() + "/" + file.getName();
+        long hash = mix(seed ^ mix(name.hashCode() ^ mix(block ^ mix(row))));
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    // Mezcla de los bits de splitmix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
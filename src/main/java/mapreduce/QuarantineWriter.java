@@ -0,0 +1,136 @@
+/**
+ * Este archivo contiene la clase QuarantineWriter que guarda en un CSV aparte las
+ * lineas que no se pudieron serializar, con el motivo y su posicion en el archivo.
+ */
+
+package mapreduce;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+// Cada linea del CSV de cuarentena tiene las columnas
+//   reason,line,offset,column,raw
+// donde line es el numero de linea en el CSV de entrada (empezando en 1), offset
+// es el byte donde empieza la linea, column es la columna del esquema con el
+// valor invalido (vacia si el problema es la cantidad de columnas) y raw es la
+// linea original entre comillas. El archivo solo se crea si hay alguna linea mala
+public class QuarantineWriter implements Closeable {
+
+    // Motivos por los que una linea va a cuarentena
+    public enum Reason {
+        // La linea tiene menos columnas de las esperadas
+        SHORT_ROW,
+        // La linea tiene mas columnas de las esperadas (por ejemplo una coma sin comillas)
+        EXTRA_COLUMNS,
+        // Un valor numerico no se pudo convertir
+        INVALID_NUMBER,
+        // Un texto no es uno de los simbolos del enum (album_type, weekday_of_release)
+        INVALID_SYMBOL
+    }
+
+    private static final String HEADER = "reason,line,offset,column,raw\n";
+
+    private final Configuration conf;
+    private final Path path;
+    private OutputStream out;
+    private long count;
+
+    public QuarantineWriter(Configuration conf, Path path) {
+        this.conf = conf;
+        this.path = path;
+    }
+
+    // Agrega una linea a la cuarentena. line es el numero de linea dentro del
+    // rango leido; merge() lo convierte en el numero de linea del archivo
+    public void write(Reason reason, long line, long offset, String column, Text raw) throws IOException {
+        if (out == null) {
+            out = path.getFileSystem(conf).create(path, true);
+            out.write(HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+        String prefix = reason + "," + line + "," + offset + "," + (column == null ? "" : column) + ",\"";
+        out.write(prefix.getBytes(StandardCharsets.UTF_8));
+        //Se duplican las comillas de la linea original para que el CSV sea valido
+        byte[] bytes = raw.getBytes();
+        int start = 0;
+        for (int i = 0; i < raw.getLength(); i++) {
+            if (bytes[i] == '"') {
+                out.write(bytes, start, i - start + 1);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(bytes, start, raw.getLength() - start);
+        out.write('"');
+        out.write('\n');
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    // Une los archivos de cuarentena de cada rango en output, en el orden de los
+    // rangos, sumando a cada numero de linea las lineas de los rangos anteriores
+    // (lineBases). Borra los archivos de los rangos y retorna la cantidad de lineas
+    public static long merge(Configuration conf, List<QuarantineWriter> ranges, long[] lineBases, Path output)
+            throws IOException {
+        FileSystem fs = output.getFileSystem(conf);
+        long total = 0;
+        Writer writer = null;
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                QuarantineWriter range = ranges.get(i);
+                if (range.getCount() == 0) {
+                    continue;
+                }
+                if (writer == null) {
+                    writer = new OutputStreamWriter(fs.create(output, true), StandardCharsets.UTF_8);
+                    writer.write(HEADER);
+                }
+                try (BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(fs.open(range.getPath()), StandardCharsets.UTF_8))) {
+                    //Se salta el encabezado del archivo del rango
+                    reader.readLine();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int first = line.indexOf(',');
+                        int second = line.indexOf(',', first + 1);
+                        long lineNumber = Long.parseLong(line.substring(first + 1, second)) + lineBases[i];
+                        writer.write(line.substring(0, first + 1) + lineNumber + line.substring(second));
+                        writer.write('\n');
+                        total++;
+                    }
+                }
+                fs.delete(range.getPath(), false);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Este archivo contiene la clase ReleaseDateCache que convierte la fecha de
+ * lanzamiento (epoch) en año, mes, dia y dia de la semana, calculando cada
+ * fecha distinta una sola vez.
+ */
+
+package mapreduce;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import classes.avro.Weekday;
+
+// Reemplaza las funciones de get_release_date.py. Igual que en el script de Pig,
+// el epoch viene en milisegundos, se le quitan los ultimos 3 digitos y la fecha
+// se calcula en la zona horaria local. El dia de la semana es el enum Weekday
+// del esquema SpotifyTrack (Mon, Tue, ...). Los resultados se guardan en una tabla hash de
+// primitivos, asi las filas con una fecha repetida no crean objetos
+public class ReleaseDateCache {
+
+    // Cantidad maxima de fechas guardadas antes de vaciar la tabla
+    private static final int MAX_ENTRIES = 1 << 16;
+    private static final int CAPACITY = MAX_ENTRIES * 2;
+    // Al empaquetar quedan 20 bits para el año (con signo)
+    private static final int MIN_YEAR = -(1 << 19);
+    private static final int MAX_YEAR = (1 << 19) - 1;
+    // Los simbolos de Weekday van de lunes a domingo, como DayOfWeek
+    private static final Weekday[] WEEKDAYS = Weekday.values();
+
+    private final ZoneId zone;
+    private final long[] keys = new long[CAPACITY];
+    // Fecha empaquetada: año << 12 | mes << 8 | dia << 3 | (dia de la semana - 1)
+    private final int[] values = new int[CAPACITY];
+    private final boolean[] used = new boolean[CAPACITY];
+    private int size;
+
+    public ReleaseDateCache() {
+        this(ZoneId.systemDefault());
+    }
+
+    public ReleaseDateCache(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    // Retorna la fecha empaquetada para un epoch en segundos. Lanza
+    // DateTimeException si la fecha esta fuera del rango de Instant o si el año
+    // no cabe en la fecha empaquetada
+    public int lookup(long epochSeconds) {
+        int slot = (int) (mix(epochSeconds) & (CAPACITY - 1));
+        while (used[slot]) {
+            if (keys[slot] == epochSeconds) {
+                return values[slot];
+            }
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+        if (size == MAX_ENTRIES) {
+            //La tabla se vacia en lugar de crecer, para acotar la memoria
+            Arrays.fill(used, false);
+            size = 0;
+            slot = (int) (mix(epochSeconds) & (CAPACITY - 1));
+        }
+        LocalDate date = Instant.ofEpochSecond(epochSeconds).atZone(zone).toLocalDate();
+        if (date.getYear() < MIN_YEAR || date.getYear() > MAX_YEAR) {
+            throw new DateTimeException("Año fuera de rango: " + date.getYear());
+        }
+        int packed = date.getYear() << 12 | date.getMonthValue() << 8 | date.getDayOfMonth() << 3
+            | (date.getDayOfWeek().getValue() - 1);
+        keys[slot] = epochSeconds;
+        values[slot] = packed;
+        used[slot] = true;
+        size++;
+        return packed;
+    }
+
+    public static int year(int packed) {
+        return packed >> 12;
+    }
+
+    public static int month(int packed) {
+        return (packed >> 8) & 0xF;
+    }
+
+    public static int day(int packed) {
+        return (packed >> 3) & 0x1F;
+    }
+
+    public static Weekday weekday(int packed) {
+        return WEEKDAYS[packed & 0x7];
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 32);
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Este archivo contiene la clase ShuffleReport que imprime cuantos registros
+ * envian los mappers de un trabajo antes y despues del combiner.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapreduce.TaskCounter;
+
+// Los contadores son los mismos que Hadoop imprime al terminar el trabajo, pero
+// juntos en una linea para comparar la salida del map con lo que llega al reducer
+public class ShuffleReport {
+
+    public static void print(RunningJob job) throws IOException {
+        Counters counters = job.getCounters();
+        long mapOutput = counters.getCounter(TaskCounter.MAP_OUTPUT_RECORDS);
+        long combineInput = counters.getCounter(TaskCounter.COMBINE_INPUT_RECORDS);
+        long combineOutput = counters.getCounter(TaskCounter.COMBINE_OUTPUT_RECORDS);
+        long reduceInput = counters.getCounter(TaskCounter.REDUCE_INPUT_RECORDS);
+        long shuffleBytes = counters.getCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES);
+        System.out.println(String.format(Locale.ROOT, "Shuffle de %s: %d registros de salida del map, combiner %d -> %d, "
+            + "%d registros de entrada del reduce (%.1f veces menos), %d bytes",
+            job.getJobName(), mapOutput, combineInput, combineOutput, reduceInput,
+            reduceInput == 0 ? 0.0 : mapOutput / (double) reduceInput, shuffleBytes));
+    }
+}
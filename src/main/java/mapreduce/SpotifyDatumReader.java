@@ -0,0 +1,137 @@
+/**
+ * Este archivo contiene la clase SpotifyDatumReader que lee registros SpotifyTrack
+ * (esquema v2) tanto de archivos v2 como de archivos escritos con el esquema
+ * spotify original (v1).
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.util.Utf8;
+
+import classes.avro.SpotifyTrack;
+
+// Los campos numericos v1 (por ejemplo ["int","string","null"]) se leen como los
+// campos ["null","int"] de v2 con la resolucion de esquemas de Avro: el alias
+// spotify de SpotifyTrack une los dos registros y la rama string de las uniones
+// v1 nunca se escribe. La resolucion no convierte string en enum, por lo que
+// album_type y weekday_of_release de un archivo v1 se leen con un esquema puente
+// (v2 con esos campos como ["null","string"]) y el texto se pasa al simbolo del enum.
+// Si el archivo se escribió con diccionarios, los nombres se llenan a partir de los ids
+public class SpotifyDatumReader extends SpecificDatumReader<SpotifyTrack> {
+
+    private final SpotifyDictionaries dictionaries;
+
+    // Simbolos de cada campo enum que se lee como texto, por posicion. Es null
+    // si el archivo ya usa el esquema v2 y no hace falta convertir nada
+    private Map<Utf8, Object>[] symbols;
+    private final Utf8 scratch = new Utf8();
+
+    public SpotifyDatumReader() {
+        this(null);
+    }
+
+    public SpotifyDatumReader(SpotifyDictionaries dictionaries) {
+        super(SpotifyTrack.getClassSchema());
+        this.dictionaries = dictionaries;
+    }
+
+    @Override
+    public SpotifyTrack read(SpotifyTrack reuse, Decoder in) throws IOException {
+        if (dictionaries == null) {
+            return super.read(reuse, in);
+        }
+        //Los nombres del registro reutilizado son los Utf8 compartidos de los
+        //diccionarios, asi que se quitan para que la lectura no los sobrescriba
+        if (reuse != null) {
+            SpotifyDictionaries.removeNames(reuse);
+        }
+        SpotifyTrack track = super.read(reuse, in);
+        dictionaries.decode(track);
+        return track;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setSchema(Schema writer) {
+        super.setSchema(writer);
+        Schema v2 = SpotifyTrack.getClassSchema();
+        List<Schema.Field> fields = new ArrayList<>();
+        Map<Utf8, Object>[] textEnums = new Map[v2.getFields().size()];
+        boolean bridge = false;
+        for (Schema.Field field : v2.getFields()) {
+            Schema type = field.schema();
+            Schema enumType = branch(type, Schema.Type.ENUM);
+            Schema.Field written = writer.getField(field.name());
+            if (enumType != null && written != null && branch(written.schema(), Schema.Type.ENUM) == null) {
+                type = Schema.createUnion(Schema.create(Schema.Type.NULL), Schema.create(Schema.Type.STRING));
+                Map<Utf8, Object> values = new HashMap<>();
+                for (String symbol : enumType.getEnumSymbols()) {
+                    values.put(new Utf8(symbol), SpecificData.get().createEnum(symbol, enumType));
+                }
+                textEnums[field.pos()] = values;
+                bridge = true;
+            }
+            fields.add(new Schema.Field(field.name(), type, field.doc(), field.defaultVal()));
+        }
+        if (bridge) {
+            //El esquema puente conserva el nombre y el alias, asi se sigue creando
+            //un SpotifyTrack y la resolucion con el registro spotify sigue valiendo
+            Schema reader = Schema.createRecord(v2.getName(), v2.getDoc(), v2.getNamespace(), false, fields);
+            for (String alias : v2.getAliases()) {
+                reader.addAlias(alias);
+            }
+            setExpected(reader);
+            symbols = textEnums;
+        } else {
+            setExpected(v2);
+            symbols = null;
+        }
+    }
+
+    @Override
+    protected void readField(Object record, Schema.Field field, Object oldDatum, ResolvingDecoder in, Object state)
+            throws IOException {
+        Map<Utf8, Object> values = symbols == null ? null : symbols[field.pos()];
+        if (values == null) {
+            super.readField(record, field, oldDatum, in, state);
+            return;
+        }
+        Utf8 text = (Utf8) read(scratch, field.schema(), in);
+        Object symbol = null;
+        if (text != null) {
+            symbol = values.get(text);
+            if (symbol == null) {
+                throw new AvroTypeException("El valor " + text + " de " + field.name()
+                    + " no es un simbolo del esquema SpotifyTrack");
+            }
+        }
+        ((SpotifyTrack) record).put(field.pos(), symbol);
+    }
+
+    // Retorna la rama de tipo type de una union (o el esquema mismo si es de ese tipo)
+    private static Schema branch(Schema schema, Schema.Type type) {
+        if (schema.getType() == type) {
+            return schema;
+        }
+        if (schema.getType() == Schema.Type.UNION) {
+            for (Schema member : schema.getTypes()) {
+                if (member.getType() == type) {
+                    return member;
+                }
+            }
+        }
+        return null;
+    }
+}
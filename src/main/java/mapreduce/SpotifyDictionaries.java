@@ -0,0 +1,156 @@
+/**
+ * Este archivo contiene la clase SpotifyDictionaries con los diccionarios de
+ * album_name, artist_name y genre_id que usa la ingesta con ids.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.JobConf;
+
+import classes.avro.SpotifyTrack;
+
+// Con -D spotify.serializer.dictionary=true el serializador guarda en cada registro
+// album_id, artist_id y genre_code en lugar de los textos, y escribe los textos
+// una sola vez en <salida>/_dictionaries/{album_name,artist_name,genre_id}.avro.
+// SpotifyInputFormat vuelve a llenar los textos al leer, asi los trabajos que
+// usan los nombres no cambian, y los que solo cuentan valores distintos pueden
+// usar directamente los ids
+public class SpotifyDictionaries {
+
+    public static final String DIRECTORY = "_dictionaries";
+    public static final String ALBUM_NAME = "album_name";
+    public static final String ARTIST_NAME = "artist_name";
+    public static final String GENRE_ID = "genre_id";
+
+    // Diccionarios ya cargados por directorio, para que cada archivo de la entrada
+    // de un trabajo no vuelva a leerlos
+    private static final Map<String, SpotifyDictionaries> CACHE = new ConcurrentHashMap<>();
+
+    private final StringDictionary albums;
+    private final StringDictionary artists;
+    private final StringDictionary genres;
+    // Textos por id para decode(), que solo se usa con diccionarios cargados completos
+    private final Utf8[] albumNames;
+    private final Utf8[] artistNames;
+    private final Utf8[] genreNames;
+
+    private SpotifyDictionaries(StringDictionary albums, StringDictionary artists, StringDictionary genres) {
+        this.albums = albums;
+        this.artists = artists;
+        this.genres = genres;
+        this.albumNames = albums.toArray();
+        this.artistNames = artists.toArray();
+        this.genreNames = genres.toArray();
+    }
+
+    public static SpotifyDictionaries empty() {
+        return new SpotifyDictionaries(new StringDictionary(), new StringDictionary(), new StringDictionary());
+    }
+
+    // Directorio de los diccionarios de la salida del serializador
+    public static Path directory(Path outputDir) {
+        return new Path(outputDir, DIRECTORY);
+    }
+
+    public static boolean exists(Configuration conf, Path outputDir) throws IOException {
+        Path directory = directory(outputDir);
+        return directory.getFileSystem(conf).exists(directory);
+    }
+
+    public static SpotifyDictionaries load(Configuration conf, Path outputDir) throws IOException {
+        Path directory = directory(outputDir);
+        return new SpotifyDictionaries(StringDictionary.load(conf, new Path(directory, ALBUM_NAME + ".avro")),
+                                       StringDictionary.load(conf, new Path(directory, ARTIST_NAME + ".avro")),
+                                       StringDictionary.load(conf, new Path(directory, GENRE_ID + ".avro")));
+    }
+
+    public void save(Configuration conf, Path outputDir, CodecFactory codec) throws IOException {
+        Path directory = directory(outputDir);
+        albums.save(conf, new Path(directory, ALBUM_NAME + ".avro"), codec);
+        artists.save(conf, new Path(directory, ARTIST_NAME + ".avro"), codec);
+        genres.save(conf, new Path(directory, GENRE_ID + ".avro"), codec);
+    }
+
+    // Diccionarios del directorio que contiene path (un archivo avro o una parte
+    // columnar de la salida del serializador, o el directorio mismo), o null si
+    // se escribió sin diccionarios
+    public static SpotifyDictionaries forPath(Configuration conf, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        Path outputDir = fs.getFileStatus(path).isDirectory() && !ColumnarFile.isColumnar(path) ? path : path.getParent();
+        //Los diccionarios de una salida particionada estan en el directorio de la salida
+        if (YearPartitions.isPartition(outputDir)) {
+            outputDir = outputDir.getParent();
+        }
+        Path directory = directory(outputDir);
+        if (!fs.exists(directory)) {
+            return null;
+        }
+        //La ingesta incremental reescribe los diccionarios, por lo que la clave
+        //incluye la fecha de modificacion de cada archivo
+        StringBuilder key = new StringBuilder(fs.makeQualified(directory).toString());
+        for (String name : new String[] {ALBUM_NAME, ARTIST_NAME, GENRE_ID}) {
+            key.append('@').append(fs.getFileStatus(new Path(directory, name + ".avro")).getModificationTime());
+        }
+        SpotifyDictionaries cached = CACHE.get(key.toString());
+        if (cached == null) {
+            cached = load(conf, outputDir);
+            CACHE.put(key.toString(), cached);
+        }
+        return cached;
+    }
+
+    // Diccionarios de la entrada de un trabajo configurado con SpotifyInputFormat
+    public static SpotifyDictionaries forJob(JobConf job) throws IOException {
+        Path[] inputs = FileInputFormat.getInputPaths(job);
+        return inputs.length == 0 ? null : forPath(job, inputs[0]);
+    }
+
+    // Llena los ids a partir de los textos del registro
+    public void assignIds(SpotifyTrack track) {
+        track.setAlbumId(track.getAlbumName() == null ? null : albums.idOf((Utf8) track.getAlbumName()));
+        track.setArtistId(track.getArtistName() == null ? null : artists.idOf((Utf8) track.getArtistName()));
+        track.setGenreCode(track.getGenreId() == null ? null : genres.idOf((Utf8) track.getGenreId()));
+    }
+
+    // Quita los textos que ya estan en los diccionarios, antes de escribir el registro
+    public static void removeNames(SpotifyTrack track) {
+        track.setAlbumName(null);
+        track.setArtistName(null);
+        track.setGenreId(null);
+    }
+
+    // Vuelve a llenar los textos a partir de los ids de un registro leido
+    public void decode(SpotifyTrack track) {
+        if (track.getAlbumId() != null) {
+            track.setAlbumName(albumNames[track.getAlbumId()]);
+        }
+        if (track.getArtistId() != null) {
+            track.setArtistName(artistNames[track.getArtistId()]);
+        }
+        if (track.getGenreCode() != null) {
+            track.setGenreId(genreNames[track.getGenreCode()]);
+        }
+    }
+
+    public StringDictionary getAlbums() {
+        return albums;
+    }
+
+    public StringDictionary getArtists() {
+        return artists;
+    }
+
+    public StringDictionary getGenres() {
+        return genres;
+    }
+}
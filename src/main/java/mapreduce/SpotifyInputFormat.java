@@ -0,0 +1,484 @@
+/**
+ * Este archivo contiene la clase SpotifyInputFormat que usan los trabajos MapReduce
+ * para leer la salida de SpotifySerializer como registros SpotifyTrack.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.mapred.AvroInputFormat;
+import org.apache.avro.mapred.AvroJob;
+import org.apache.avro.mapred.AvroRecordReader;
+import org.apache.avro.mapred.AvroWrapper;
+import org.apache.avro.mapred.FsInput;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+import classes.avro.BlockStats;
+import classes.avro.SpotifyTrack;
+
+// Igual que AvroInputFormat, pero cada archivo se lee con SpotifyDatumReader, asi
+// un mismo directorio puede tener archivos v1 (spotify) y v2 (SpotifyTrack)
+// mientras se migran con SpotifyMigration. Si la salida del serializador tiene
+// diccionarios, los nombres de album, artista y genero se llenan a partir de los ids.
+// Las partes columnares (directorios .col) se leen con ColumnarFile, solo con las
+// columnas declaradas con setColumns. Si la entrada esta particionada por año,
+// setInputPaths solo agrega las particiones del rango spotify.input.years.
+// Los archivos de registros con indice de bloques (ver BlockStatsIndex) solo
+// leen los bloques que pueden cumplir los limites de setMinimum/setMaximum.
+// Con spotify.input.sample solo se leen las filas de la muestra (ver InputSample)
+public class SpotifyInputFormat extends AvroInputFormat<SpotifyTrack> {
+
+    // Columnas que usa el trabajo, separadas por comas. Si no se indica se leen todas
+    public static final String COLUMNS_KEY = "spotify.input.columns";
+
+    // Configura el trabajo para leer registros SpotifyTrack de la salida del serializador
+    public static void configure(JobConf conf) {
+        AvroJob.setInputSchema(conf, SpotifyTrack.getClassSchema());
+        conf.setInputFormat(SpotifyInputFormat.class);
+    }
+
+    // Usa input (la salida del serializador) como entrada del trabajo. Si esta
+    // particionada por año se agregan las particiones, solo las del rango
+    // spotify.input.years si se indicó
+    public static void setInputPaths(JobConf conf, Path input) throws IOException {
+        FileInputFormat.setInputPaths(conf, YearPartitions.inputPaths(conf, input).toArray(new Path[0]));
+    }
+
+    // Declara los campos de SpotifyTrack que usa el trabajo. De las partes
+    // columnares solo se leen esos campos y los demas quedan en null; los
+    // archivos de registros se siguen leyendo completos
+    public static void setColumns(JobConf conf, String... columns) {
+        Schema schema = SpotifyTrack.getClassSchema();
+        for (String column : columns) {
+            if (schema.getField(column) == null) {
+                throw new IllegalArgumentException("SpotifyTrack no tiene el campo " + column);
+            }
+        }
+        conf.setStrings(COLUMNS_KEY, columns);
+    }
+
+    // Lee solo una muestra determinista de fraction de las filas, para probar el trabajo
+    public static void setSample(JobConf conf, double fraction, long seed) {
+        //Se crea la muestra solo para validar la fraccion antes de enviar el trabajo
+        new InputSample(fraction, Math.sqrt(fraction), seed);
+        conf.set(InputSample.FRACTION_KEY, Double.toString(fraction));
+        conf.setLong(InputSample.SEED_KEY, seed);
+    }
+
+    // Declara que el trabajo solo usa las filas con column >= min, para saltar
+    // los bloques que no tienen ninguna. El mapper debe seguir filtrando las filas
+    public static void setMinimum(JobConf conf, String column, int min) {
+        conf.setInt(BlockStatsIndex.MIN_PREFIX + BlockStatsIndex.COLUMNS[BlockStatsIndex.column(column)], min);
+    }
+
+    // Declara que el trabajo solo usa las filas con column <= max
+    public static void setMaximum(JobConf conf, String column, int max) {
+        conf.setInt(BlockStatsIndex.MAX_PREFIX + BlockStatsIndex.COLUMNS[BlockStatsIndex.column(column)], max);
+    }
+
+    // Campos que se leen de las partes columnares. Con un rango de años se lee
+    // tambien year_of_release para descartar las filas fuera del rango
+    static List<String> getColumns(JobConf conf) {
+        String[] columns = conf.getStrings(COLUMNS_KEY);
+        if (columns != null) {
+            List<String> fields = new ArrayList<>(Arrays.asList(columns));
+            if (YearPartitions.getRange(conf) != null && !fields.contains("year_of_release")) {
+                fields.add("year_of_release");
+            }
+            return fields;
+        }
+        List<String> all = new ArrayList<>();
+        for (Schema.Field field : SpotifyTrack.getClassSchema().getFields()) {
+            all.add(field.name());
+        }
+        return all;
+    }
+
+    // Los archivos de las columnas no son archivos de registros, por si se pasa
+    // directamente un directorio .col como entrada
+    @Override
+    protected FileStatus[] listStatus(JobConf job) throws IOException {
+        List<FileStatus> files = new ArrayList<>();
+        for (FileStatus file : super.listStatus(job)) {
+            if (!ColumnarFile.isColumnar(file.getPath().getParent())) {
+                files.add(file);
+            }
+        }
+        return files.toArray(new FileStatus[0]);
+    }
+
+    // Los archivos de registros se dividen como en AvroInputFormat y cada parte
+    // columnar de la entrada es un solo split
+    @Override
+    public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+        List<InputSplit> splits = new ArrayList<>(Arrays.asList(super.getSplits(job, numSplits)));
+        for (Path input : FileInputFormat.getInputPaths(job)) {
+            FileSystem fs = input.getFileSystem(job);
+            if (ColumnarFile.isColumnar(input)) {
+                splits.add(new FileSplit(input, 0, ColumnarFile.length(job, input), new String[0]));
+            } else if (fs.getFileStatus(input).isDirectory()) {
+                for (FileStatus status : fs.listStatus(input)) {
+                    if (status.isDirectory() && ColumnarFile.isColumnar(status.getPath())) {
+                        splits.add(new FileSplit(status.getPath(), 0, ColumnarFile.length(job, status.getPath()),
+                                                 new String[0]));
+                    }
+                }
+            }
+        }
+        return splits.toArray(new InputSplit[0]);
+    }
+
+    @Override
+    public RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> getRecordReader(InputSplit split, JobConf job,
+                                                                                Reporter reporter) throws IOException {
+        reporter.setStatus(split.toString());
+        FileSplit fileSplit = (FileSplit) split;
+        RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> reader = openReader(fileSplit, job, reporter);
+        //Las filas de una particion del rango no hace falta revisarlas
+        YearPartitions.Range years = YearPartitions.getRange(job);
+        Path partition = fileSplit.getPath().getParent();
+        if (years == null || (YearPartitions.isPartition(partition) && years.contains(YearPartitions.year(partition)))) {
+            return reader;
+        }
+        return new YearFilterRecordReader(reader, years);
+    }
+
+    private RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> openReader(FileSplit fileSplit, JobConf job,
+                                                                            Reporter reporter) throws IOException {
+        if (ColumnarFile.isColumnar(fileSplit.getPath())) {
+            //Los diccionarios solo se cargan si el trabajo usa alguno de los textos
+            List<String> columns = getColumns(job);
+            SpotifyDictionaries dictionaries = null;
+            if (columns.contains(SpotifyDictionaries.ALBUM_NAME) || columns.contains(SpotifyDictionaries.ARTIST_NAME)
+                    || columns.contains(SpotifyDictionaries.GENRE_ID)) {
+                dictionaries = SpotifyDictionaries.forPath(job, fileSplit.getPath());
+            }
+            return new ColumnarRecordReader(new ColumnarFile.Reader(job, fileSplit.getPath(), columns, dictionaries),
+                                            fileSplit.getPath(), InputSample.fromConf(job), reporter);
+        }
+        SpotifyDatumReader datumReader = new SpotifyDatumReader(SpotifyDictionaries.forPath(job, fileSplit.getPath()));
+        BlockStatsIndex.Predicate predicate = BlockStatsIndex.Predicate.fromConf(job);
+        InputSample sample = InputSample.fromConf(job);
+        List<BlockStats> blocks = predicate == null && sample == null ? null : BlockStatsIndex.read(job, fileSplit.getPath());
+        if (blocks != null) {
+            return new BlockSkippingRecordReader(new DataFileReader<>(new FsInput(fileSplit.getPath(), job), datumReader),
+                                                 fileSplit, blocks, predicate, sample, reporter);
+        }
+        if (sample != null) {
+            return new SampleRecordReader(new DataFileReader<>(new FsInput(fileSplit.getPath(), job), datumReader),
+                                          fileSplit, sample, reporter);
+        }
+        return new AvroRecordReader<SpotifyTrack>(
+            DataFileReader.openReader(new FsInput(fileSplit.getPath(), job), datumReader), fileSplit) {
+        };
+    }
+
+    // Entrega las filas de una parte columnar como AvroRecordReader entrega los registros
+    // Con muestra, las filas se eligen en grupos de InputSample.COLUMNAR_BLOCK_ROWS
+    private static class ColumnarRecordReader implements RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> {
+
+        private final ColumnarFile.Reader reader;
+        private final Path part;
+        private final InputSample sample;
+        private final Reporter reporter;
+        private boolean keepBlock;
+        private long rows;
+
+        ColumnarRecordReader(ColumnarFile.Reader reader, Path part, InputSample sample, Reporter reporter) {
+            this.reader = reader;
+            this.part = part;
+            this.sample = sample;
+            this.reporter = reporter;
+        }
+
+        @Override
+        public AvroWrapper<SpotifyTrack> createKey() {
+            return new AvroWrapper<>(null);
+        }
+
+        @Override
+        public NullWritable createValue() {
+            return NullWritable.get();
+        }
+
+        @Override
+        public boolean next(AvroWrapper<SpotifyTrack> wrapper, NullWritable ignore) throws IOException {
+            while (reader.hasNext()) {
+                wrapper.datum(reader.next(wrapper.datum()));
+                long row = rows++;
+                if (sample == null) {
+                    return true;
+                }
+                long block = row / InputSample.COLUMNAR_BLOCK_ROWS;
+                if (row % InputSample.COLUMNAR_BLOCK_ROWS == 0) {
+                    keepBlock = sample.keepBlock(part, block);
+                    reporter.incrCounter(keepBlock ? InputSample.Counter.BLOCKS_SAMPLED : InputSample.Counter.BLOCKS_DROPPED, 1);
+                }
+                if (keepBlock && sample.keepRow(part, block, row % InputSample.COLUMNAR_BLOCK_ROWS)) {
+                    reporter.incrCounter(InputSample.Counter.ROWS_SAMPLED, 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return rows;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return reader.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Lee solo los bloques del split que segun el indice pueden cumplir los
+    // limites y, con muestra, que estan en la muestra. Como AvroRecordReader, un
+    // bloque es del split si su marca de sincronizacion (los 16 bytes antes del
+    // bloque) empieza dentro del split
+    private static class BlockSkippingRecordReader implements RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> {
+
+        private final DataFileReader<SpotifyTrack> reader;
+        private final Path file;
+        private final InputSample sample;
+        private final List<BlockStats> selected = new ArrayList<>();
+        // Indica si el bloque seleccionado esta justo despues del anterior, para no hacer seek
+        private final List<Boolean> follows = new ArrayList<>();
+        private final Reporter reporter;
+        private int block = -1;
+        private long remaining;
+
+        BlockSkippingRecordReader(DataFileReader<SpotifyTrack> reader, FileSplit split, List<BlockStats> blocks,
+                                  BlockStatsIndex.Predicate predicate, InputSample sample, Reporter reporter) {
+            this.reader = reader;
+            this.file = split.getPath();
+            this.sample = sample;
+            this.reporter = reporter;
+            long start = split.getStart();
+            long end = start + split.getLength();
+            boolean previousSelected = false;
+            for (BlockStats stats : blocks) {
+                long sync = stats.getOffset() - DataFileConstants.SYNC_SIZE;
+                if (sync < start || sync >= end) {
+                    continue;
+                }
+                if (predicate != null && !predicate.mayMatch(stats)) {
+                    previousSelected = false;
+                    reporter.incrCounter(BlockStatsIndex.Counter.BLOCKS_SKIPPED, 1);
+                    reporter.incrCounter(BlockStatsIndex.Counter.ROWS_SKIPPED, stats.getRows());
+                } else if (sample != null && !sample.keepBlock(file, stats.getOffset())) {
+                    previousSelected = false;
+                    reporter.incrCounter(InputSample.Counter.BLOCKS_DROPPED, 1);
+                } else {
+                    follows.add(previousSelected);
+                    selected.add(stats);
+                    previousSelected = true;
+                }
+            }
+        }
+
+        @Override
+        public AvroWrapper<SpotifyTrack> createKey() {
+            return new AvroWrapper<>(null);
+        }
+
+        @Override
+        public NullWritable createValue() {
+            return NullWritable.get();
+        }
+
+        @Override
+        public boolean next(AvroWrapper<SpotifyTrack> wrapper, NullWritable ignore) throws IOException {
+            while (true) {
+                while (remaining == 0) {
+                    if (block + 1 >= selected.size()) {
+                        return false;
+                    }
+                    block++;
+                    //Si el bloque sigue al anterior el lector ya esta en su posicion
+                    if (!follows.get(block)) {
+                        reader.seek(selected.get(block).getOffset());
+                    }
+                    remaining = selected.get(block).getRows();
+                    reporter.incrCounter(BlockStatsIndex.Counter.BLOCKS_READ, 1);
+                    if (sample != null) {
+                        reporter.incrCounter(InputSample.Counter.BLOCKS_SAMPLED, 1);
+                    }
+                }
+                wrapper.datum(reader.next(wrapper.datum()));
+                BlockStats stats = selected.get(block);
+                long row = stats.getRows() - remaining--;
+                if (sample == null) {
+                    return true;
+                }
+                if (sample.keepRow(file, stats.getOffset(), row)) {
+                    reporter.incrCounter(InputSample.Counter.ROWS_SAMPLED, 1);
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return reader.tell();
+        }
+
+        // Fraccion de los bloques seleccionados que ya se leyeron
+        @Override
+        public float getProgress() throws IOException {
+            return selected.isEmpty() ? 1.0f : Math.min(1.0f, (block + 1) / (float) selected.size());
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Muestra de un archivo sin indice de bloques. Los bloques que no estan en la
+    // muestra se leen pero no se decodifican. Los limites del split son los de AvroRecordReader
+    private static class SampleRecordReader implements RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> {
+
+        private final DataFileReader<SpotifyTrack> reader;
+        private final Path file;
+        private final InputSample sample;
+        private final Reporter reporter;
+        private final long start;
+        private final long end;
+        private long block = -1;
+        private long row;
+
+        SampleRecordReader(DataFileReader<SpotifyTrack> reader, FileSplit split, InputSample sample,
+                           Reporter reporter) throws IOException {
+            this.reader = reader;
+            this.file = split.getPath();
+            this.sample = sample;
+            this.reporter = reporter;
+            reader.sync(split.getStart());
+            this.start = reader.tell();
+            this.end = split.getStart() + split.getLength();
+        }
+
+        @Override
+        public AvroWrapper<SpotifyTrack> createKey() {
+            return new AvroWrapper<>(null);
+        }
+
+        @Override
+        public NullWritable createValue() {
+            return NullWritable.get();
+        }
+
+        @Override
+        public boolean next(AvroWrapper<SpotifyTrack> wrapper, NullWritable ignore) throws IOException {
+            while (reader.hasNext() && !reader.pastSync(end)) {
+                if (reader.previousSync() != block) {
+                    block = reader.previousSync();
+                    row = 0;
+                    if (!sample.keepBlock(file, block)) {
+                        reporter.incrCounter(InputSample.Counter.BLOCKS_DROPPED, 1);
+                        reader.nextBlock();
+                        continue;
+                    }
+                    reporter.incrCounter(InputSample.Counter.BLOCKS_SAMPLED, 1);
+                }
+                wrapper.datum(reader.next(wrapper.datum()));
+                if (sample.keepRow(file, block, row++)) {
+                    reporter.incrCounter(InputSample.Counter.ROWS_SAMPLED, 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return reader.tell();
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return end == start ? 0.0f : Math.min(1.0f, (reader.tell() - start) / (float) (end - start));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Descarta las filas cuyo año no esta en el rango, cuando la entrada no esta particionada
+    private static class YearFilterRecordReader implements RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> {
+
+        private final RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> reader;
+        private final YearPartitions.Range years;
+
+        YearFilterRecordReader(RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> reader, YearPartitions.Range years) {
+            this.reader = reader;
+            this.years = years;
+        }
+
+        @Override
+        public AvroWrapper<SpotifyTrack> createKey() {
+            return reader.createKey();
+        }
+
+        @Override
+        public NullWritable createValue() {
+            return reader.createValue();
+        }
+
+        @Override
+        public boolean next(AvroWrapper<SpotifyTrack> wrapper, NullWritable ignore) throws IOException {
+            while (reader.next(wrapper, ignore)) {
+                if (years.contains(wrapper.datum().getYearOfRelease())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return reader.getPos();
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return reader.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Indica si la entrada del trabajo se escribió con diccionarios, para que los
+    // trabajos que solo cuentan albumes o generos distintos usen los ids
+    public static boolean hasDictionaries(JobConf conf) throws IOException {
+        return SpotifyDictionaries.forJob(conf) != null;
+    }
+}
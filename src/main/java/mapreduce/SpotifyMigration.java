@@ -0,0 +1,120 @@
+/**
+ * Este archivo contiene la clase SpotifyMigration que reescribe los archivos avro
+ * con el esquema spotify original (v1) usando el esquema SpotifyTrack (v2).
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.mapred.FsInput;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import classes.avro.SpotifyTrack;
+
+// Uso: SpotifyMigration [-D opcion=valor ...] <archivo o directorio> [directorio de salida]
+// Cada archivo .avro v1 se lee con SpotifyDatumReader y se escribe con el mismo
+// nombre en la salida. Sin directorio de salida los archivos se reemplazan en el
+// mismo lugar, por lo que los nombres del serializador (spotify.avro,
+// spotify-delta-NNNNN.avro) y su checkpoint siguen valiendo. Se mantiene el codec
+// de cada archivo salvo que se pase -D spotify.serializer.codec. Los archivos que
+// ya son v2 se saltan
+public class SpotifyMigration extends Configured implements Tool {
+
+    public int run(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Uso: SpotifyMigration <archivo o directorio> [directorio de salida]");
+            return -1;
+        }
+        Configuration conf = getConf();
+        Path input = new Path(args[0]);
+        FileSystem fs = input.getFileSystem(conf);
+        Path outputDir = args.length == 2 ? new Path(args[1]) : null;
+
+        List<Path> files = new ArrayList<>();
+        if (fs.getFileStatus(input).isDirectory()) {
+            for (FileStatus status : fs.listStatus(input)) {
+                String name = status.getPath().getName();
+                if (status.isFile() && name.endsWith(".avro") && !name.startsWith("_") && !name.startsWith(".")) {
+                    files.add(status.getPath());
+                }
+            }
+        } else {
+            files.add(input);
+        }
+
+        long migrated = 0;
+        long records = 0;
+        for (Path file : files) {
+            Path target = outputDir == null ? file : new Path(outputDir, file.getName());
+            long count = migrate(conf, file, target);
+            if (count < 0) {
+                System.out.println("Ya usa el esquema v2: " + file);
+            } else {
+                System.out.println("Migrado " + file + " a " + target + " (" + count + " registros)");
+                migrated++;
+                records += count;
+            }
+        }
+        System.out.println("Archivos migrados: " + migrated + " de " + files.size() + ", " + records + " registros");
+        return 0;
+    }
+
+    // Reescribe un archivo con el esquema v2. Retorna la cantidad de registros, o
+    // -1 si el archivo ya era v2 y se escribe en el mismo lugar
+    static long migrate(Configuration conf, Path source, Path target) throws IOException {
+        FileSystem fs = target.getFileSystem(conf);
+        boolean inPlace = source.equals(target);
+        //En el mismo lugar se escribe primero un archivo temporal, oculto para los
+        //trabajos MapReduce por empezar con _, y luego reemplaza al original
+        Path output = inPlace ? new Path(target.getParent(), "_migrating-" + target.getName()) : target;
+        long count = 0;
+        try (DataFileReader<SpotifyTrack> reader =
+                 new DataFileReader<>(new FsInput(source, conf), new SpotifyDatumReader())) {
+            boolean v2 = reader.getSchema().getFullName().equals(SpotifyTrack.getClassSchema().getFullName());
+            if (v2 && inPlace) {
+                return -1;
+            }
+            String codec = reader.getMetaString(DataFileConstants.CODEC);
+            codec = conf.get(SpotifySerializer.CODEC_KEY, codec == null ? DataFileConstants.NULL_CODEC : codec);
+
+            try (DataFileWriter<SpotifyTrack> writer = new DataFileWriter<>(new SpecificDatumWriter<>(SpotifyTrack.class))) {
+                writer.setCodec(SpotifySerializer.parseCodec(codec));
+                writer.setSyncInterval(conf.getInt(SpotifySerializer.SYNC_INTERVAL_KEY,
+                                                   DataFileConstants.DEFAULT_SYNC_INTERVAL));
+                writer.create(SpotifyTrack.getClassSchema(), fs.create(output, true));
+                SpotifyTrack record = null;
+                while (reader.hasNext()) {
+                    record = reader.next(record);
+                    writer.append(record);
+                    count++;
+                }
+            }
+        }
+        if (inPlace) {
+            fs.delete(target, false);
+            if (!fs.rename(output, target)) {
+                throw new IOException("No se pudo reemplazar " + target + " con " + output);
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int res = ToolRunner.run(new Configuration(), new SpotifyMigration(), args);
+        System.exit(res);
+    }
+}
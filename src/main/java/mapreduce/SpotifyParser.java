@@ -11,48 +11,148 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.LineReader;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class SpotifyParser {
 
 
+    // Abre el archivo y devuelve un iterador que parsea una linea a la vez,
+    // de forma que la memoria usada no depende del tamaño del archivo.
+    // El iterador debe cerrarse al terminar (se puede usar try-with-resources)
+    public RecordIterator open(Text value) throws IOException {
+        //Crea una configuración y obtiene el path del archivo
+        Configuration conf = new Configuration();
+        Path path = new Path(value.toString());
+        return open(conf, path, 0, Long.MAX_VALUE);
+    }
+
+    // Abre solo el rango de bytes [start, end] del archivo. Igual que el
+    // LineRecordReader de Hadoop, se leen las lineas que empiezan despues de
+    // start y hasta end inclusive (la primera linea del archivo se incluye si
+    // start es 0). Asi varios rangos contiguos cubren cada linea exactamente
+    // una vez aunque los limites caigan en medio de una linea
+    public RecordIterator open(Configuration conf, Path path, long start, long end) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        FSDataInputStream inputStream = fs.open(path);
+        inputStream.seek(start);
+        return new RecordIterator(inputStream, conf, start, end);
+    }
+
+    // Lee el archivo completo en memoria. Solo conviene para archivos pequeños,
+    // para el dataset completo se debe usar open()
     public List<String[]> parse(Text value) throws IOException {
         //Crea una lista para almacenar los registros
         List<String[]> records = new ArrayList<>();
 
-        //Crea una configuración y un sistema de archivos
-        Configuration conf = new Configuration();
-        FileSystem fs = FileSystem.get(conf);
+        try (RecordIterator iterator = open(value)) {
+            while (iterator.hasNext()) {
+                records.add(iterator.next());
+            }
+        }
+        return records;
+    }
 
-        //Obtiene el path del archivo
-        Path path = new Path(value.toString());
-        FSDataInputStream inputStream = null;
-        BufferedReader reader = null;
-
-        // Lee el archivo linea por linea
-        try {
-            inputStream = fs.open(path);
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                //Se parsea el CSV
-                String[] fields = parseCSVLine(line);
-                records.add(fields);
+    // Iterador que lee el CSV linea por linea bajo demanda.
+    // Solo mantiene en memoria la linea actual, en un buffer que se reutiliza
+    public class RecordIterator implements Iterator<String[]>, Closeable {
+        private final FSDataInputStream inputStream;
+        private final LineReader reader;
+        private final long end;
+        private final Text line = new Text();
+        // Indica si la linea actual ya se leyó del archivo y aun no se entregó
+        private boolean fetched;
+        private boolean hasLine;
+        // Posicion en bytes del inicio de la linea siguiente
+        private long pos;
+        private long lineNumber = 0;
+
+        private RecordIterator(FSDataInputStream inputStream, Configuration conf, long start, long end) throws IOException {
+            this.inputStream = inputStream;
+            this.reader = new LineReader(inputStream, conf);
+            this.end = end;
+            this.pos = start;
+            // Si el rango no empieza al inicio del archivo, la primera linea
+            // (posiblemente incompleta) pertenece al rango anterior
+            if (start != 0) {
+                pos += reader.readLine(new Text());
+            }
+        }
+
+        // Lee la siguiente linea si todavia empieza dentro del rango
+        private void advance() throws IOException {
+            hasLine = false;
+            if (pos <= end) {
+                int bytes = reader.readLine(line);
+                if (bytes > 0) {
+                    pos += bytes;
+                    hasLine = true;
+                }
             }
-        } finally {
+            fetched = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!fetched) {
+                try {
+                    advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return hasLine;
+        }
+
+        @Override
+        public String[] next() {
+            Text current = nextLine();
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            return parseCSVLine(current.toString());
+        }
+
+        // Devuelve la siguiente linea sin decodificar, o null si no quedan lineas
+        // en el rango. El Text se reutiliza: su contenido solo es valido hasta la
+        // siguiente llamada. Se usa junto con CsvTokenizer para no crear Strings
+        public Text nextLine() {
+            if (!hasNext()) {
+                return null;
+            }
+            fetched = false;
+            lineNumber++;
+            return line;
+        }
+
+        // Numero de lineas entregadas hasta el momento
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        // Posicion en el archivo (desde el byte 0, no desde el inicio del rango)
+        // del inicio de la linea siguiente
+        public long getPos() {
+            return pos;
+        }
+
+        @Override
+        public void close() {
             //Se cierran los streams
             IOUtils.closeStream(reader);
             IOUtils.closeStream(inputStream);
         }
-        return records;
     }
 
-    private String[] parseCSVLine(String line) {
+    // Version basada en Strings, se mantiene para parse() y como referencia de CsvTokenizer
+    static String[] parseCSVLine(String line) {
         //Se crea una lista para almacenar los campos de la linea
         List<String> fields = new ArrayList<>();
 
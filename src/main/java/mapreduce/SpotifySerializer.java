@@ -6,127 +6,866 @@
 package mapreduce;
 
 import java.io.BufferedWriter;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.avro.Schema;
-import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.DatumReader;
-import org.apache.avro.mapred.FsInput;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.mapred.AvroWrapper;
 import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.util.Utf8;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.GenericOptionsParser;
 
 import com.opencsv.exceptions.CsvValidationException;
 
+import classes.avro.AlbumType;
+import classes.avro.BlockStats;
+import classes.avro.SpotifyTrack;
+import classes.avro.Weekday;
 import mapreduce.SpotifyParser;
 
 public class SpotifySerializer {
 
    
+    // Opciones de la serializacion. Se pueden pasar por linea de comandos con
+    // -D <opcion>=<valor> antes del flag, por ejemplo:
+    //   -D spotify.serializer.threads=8 serializer
+    public static final String INPUT_KEY = "spotify.serializer.input";
+    public static final String OUTPUT_KEY = "spotify.serializer.output";
+    // Cantidad de hilos que parsean y escriben en paralelo (0 = todos los nucleos)
+    public static final String THREADS_KEY = "spotify.serializer.threads";
+    // Si es true, las partes escritas en paralelo se unen en un solo spotify.avro
+    public static final String MERGE_KEY = "spotify.serializer.merge";
+    // Codec de compresion de los bloques del archivo avro: null, snappy, bzip2,
+    // deflate, xz o zstandard. Los tres ultimos aceptan un nivel, por ejemplo deflate-6
+    public static final String CODEC_KEY = "spotify.serializer.codec";
+    // Tamaño aproximado en bytes de cada bloque antes de comprimirlo
+    public static final String SYNC_INTERVAL_KEY = "spotify.serializer.sync.interval";
+    // Cada cuantos milisegundos se imprime una linea de progreso (0 = nunca)
+    public static final String PROGRESS_KEY = "spotify.serializer.progress.ms";
+    // Reporte JSON con las metricas de la ingesta. Empieza con _ para que los
+    // trabajos MapReduce lo ignoren al leer el directorio de salida
+    public static final String REPORT_FILE = "_ingest_report.json";
+    // Formato del CSV de entrada: clean es la salida del script de Pig (27 columnas)
+    // y raw es el tracks.csv original (31 columnas con encabezado), que se limpia
+    // aqui mismo sin pasar por Pig
+    public static final String FORMAT_KEY = "spotify.serializer.format";
+    // Si es true, solo se serializan las lineas agregadas al CSV despues de la
+    // ejecucion anterior y se escriben en una nueva parte spotify-delta-NNNNN.avro
+    public static final String INCREMENTAL_KEY = "spotify.serializer.incremental";
+    // Checkpoint de la ingesta incremental, guardado junto a la salida
+    public static final String CHECKPOINT_FILE = "_ingest_checkpoint";
+    // Si es true, las lineas con valores invalidos o una cantidad incorrecta de
+    // columnas se guardan en la cuarentena y la serializacion continua
+    public static final String TOLERANT_KEY = "spotify.serializer.tolerant";
+    // Directorio de la cuarentena dentro de la salida
+    public static final String QUARANTINE_DIR = "_quarantine";
+    // Si es true, album_name, artist_name y genre_id se guardan como ids (album_id,
+    // artist_id, genre_code) y los textos se escriben una sola vez en _dictionaries
+    public static final String DICTIONARY_KEY = "spotify.serializer.dictionary";
+    // row (por defecto) escribe cada parte como un archivo avro de registros y
+    // columnar como un directorio con un archivo por columna (ver ColumnarFile)
+    public static final String LAYOUT_KEY = "spotify.serializer.layout";
+    // none (por defecto) o year, que escribe cada fila en la particion
+    // year=YYYY/ de su year_of_release (ver YearPartitions)
+    public static final String PARTITION_KEY = "spotify.serializer.partition";
+    // Si es true, junto a cada archivo avro de registros se escribe el indice
+    // de estadisticas por bloque _<archivo>.stats (ver BlockStatsIndex)
+    public static final String STATS_KEY = "spotify.serializer.stats";
+
     public static void serializer() throws IOException, CsvValidationException {
+        serializer(new Configuration());
+    }
+
+    public static void serializer(Configuration conf) throws IOException {
         //Se establecen las rutas de los archivos 
-        String CSV_FILE_PATH = "tracks-clean.csv";
-        String AVRO_SCHEMA_PATH = "./src/avro/spotify.avsc";
-        String PATH = "./outputSerializado/spotify.avro";
+        String CSV_FILE_PATH = conf.get(INPUT_KEY, "tracks-clean.csv");
+        String OUTPUT_DIR = conf.get(OUTPUT_KEY, "./outputSerializado");
 
-        //Se define el esquema de los datos de spotify
-        Schema schema;
+        //El esquema se toma de la clase generada, asi siempre coincide con los
+        //registros que se escriben. Los archivos nuevos usan el esquema v2
+        //(SpotifyTrack); los trabajos leen tambien los v1 con SpotifyInputFormat
+        Schema schema = SpotifyTrack.getClassSchema();
+
+        FileSystem fs = FileSystem.get(conf);
+        Path outputDir = new Path(OUTPUT_DIR);
+        Path input = new Path(CSV_FILE_PATH);
+
+        //En modo incremental se continua desde el checkpoint si el CSV solo
+        //creció desde la ejecucion anterior
+        boolean incremental = conf.getBoolean(INCREMENTAL_KEY, false);
+        Path checkpointPath = new Path(outputDir, CHECKPOINT_FILE);
+        IngestCheckpoint checkpoint = incremental ? IngestCheckpoint.load(conf, checkpointPath) : null;
+        if (checkpoint != null && !checkpoint.matches(conf, input)) {
+            System.out.println("El CSV cambió desde el ultimo checkpoint, se serializa completo");
+            checkpoint = null;
+        }
+        //Las partes de un mismo directorio tienen que usar todas ids o todas textos
+        boolean dictionary = conf.getBoolean(DICTIONARY_KEY, false);
+        if (checkpoint != null && dictionary != SpotifyDictionaries.exists(conf, outputDir)) {
+            System.out.println("La opcion " + DICTIONARY_KEY + " cambió desde el ultimo checkpoint, se serializa completo");
+            checkpoint = null;
+        }
+        boolean partitioned = isPartitioned(conf);
+        if (checkpoint != null && partitioned == YearPartitions.list(conf, outputDir).isEmpty()) {
+            System.out.println("La opcion " + PARTITION_KEY + " cambió desde el ultimo checkpoint, se serializa completo");
+            checkpoint = null;
+        }
+        long startOffset = checkpoint == null ? 0 : checkpoint.getOffset();
+
+        if (checkpoint == null) {
+            //Se borran las salidas de una ejecucion anterior (archivo unico, partes
+            //y partes incrementales, en archivos o directorios de columnas, y las
+            //particiones por año) junto con su checkpoint
+            for (String pattern : new String[] {"spotify*.avro", "_spotify*.stats", "spotify*" + ColumnarFile.EXT,
+                                                YearPartitions.PREFIX + "*"}) {
+                FileStatus[] previous = fs.globStatus(new Path(outputDir, pattern));
+                if (previous != null) {
+                    for (FileStatus status : previous) {
+                        fs.delete(status.getPath(), true);
+                    }
+                }
+            }
+            fs.delete(checkpointPath, false);
+            fs.delete(new Path(outputDir, QUARANTINE_DIR), true);
+            fs.delete(SpotifyDictionaries.directory(outputDir), true);
+        }
+        //En modo incremental los ids nuevos continuan despues de los ya asignados
+        SpotifyDictionaries dictionaries = null;
+        if (dictionary) {
+            dictionaries = checkpoint != null ? SpotifyDictionaries.load(conf, outputDir) : SpotifyDictionaries.empty();
+        }
+
+        int threads = conf.getInt(THREADS_KEY, 1);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        //Cada hilo agrega sus metricas a la lista para que el progreso las lea.
+        //En modo tolerante cada rango tiene ademas su propio archivo de cuarentena
+        List<IngestMetrics> metrics = new CopyOnWriteArrayList<>();
+        Path quarantineDir = conf.getBoolean(TOLERANT_KEY, false) ? new Path(outputDir, QUARANTINE_DIR) : null;
+        List<QuarantineWriter> quarantines = new ArrayList<>();
+        String outputName = "spotify";
+        long progressMs = conf.getLong(PROGRESS_KEY, 10000);
+        ScheduledExecutorService progress = progressMs > 0 ? IngestMetrics.startProgress(metrics, progressMs) : null;
+        IngestMetrics total = IngestMetrics.forSchema(schema);
+        long startNanos = System.nanoTime();
+        boolean completed = false;
+        int nextDelta = 0;
         try {
-            schema = new Schema.Parser().parse(new File(AVRO_SCHEMA_PATH));
-        } catch(IOException e){
-            schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"spotify\",\"namespace\":\"classes.avro\",\"fields\":[{\"name\":\"id\",\"type\":[\"string\",\"null\"]},{\"name\":\"track_name\",\"type\":[\"string\",\"null\"]},{\"name\":\"duration\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"explicit\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"popularity\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"acousticness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"danceability\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"energy\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"instrumentalness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"key\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"liveness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"loudness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"speechiness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"tempo\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"time_signature\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"valence\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"album_name\",\"type\":[\"string\",\"null\"]},{\"name\":\"album_type\",\"type\":[\"string\",\"null\"]},{\"name\":\"year_of_release\",\"type\":[\"int\",\"null\"]},{\"name\":\"month_of_release\",\"type\":[\"int\",\"null\"]},{\"name\":\"day_of_release\",\"type\":[\"int\",\"null\"]},{\"name\":\"weekday_of_release\",\"type\":[\"string\",\"null\"]},{\"name\":\"album_popularity\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"artist_name\",\"type\":[\"string\",\"null\"]},{\"name\":\"artist_popularity\",\"type\":[\"int\",\"null\",\"string\"]},{\"name\":\"followers\",\"type\":[\"int\",\"null\",\"string\"]},{\"name\":\"genre_id\",\"type\":[\"string\",\"null\"]}]}");
+            if (checkpoint != null) {
+                //Las filas nuevas empiezan en el offset. El rango se abre un byte
+                //antes (en el salto de linea) porque SpotifyParser descarta la
+                //linea en la que empieza un rango que no es el inicio del archivo
+                nextDelta = checkpoint.getNextDelta();
+                outputName = String.format("spotify-delta-%05d", nextDelta);
+                Path delta = outputPath(conf, outputDir, outputName);
+                IngestMetrics rangeMetrics = IngestMetrics.forSchema(schema);
+                metrics.add(rangeMetrics);
+                long rows = serializeRange(conf, schema, input, Math.max(0, startOffset - 1), Long.MAX_VALUE,
+                                           delta, rangeMetrics, newQuarantine(conf, quarantineDir, 0, quarantines),
+                                           dictionaries);
+                if (rows == 0) {
+                    fs.delete(delta, true);
+                    fs.delete(BlockStatsIndex.path(delta), false);
+                    System.out.println("No hay filas nuevas desde el byte " + startOffset);
+                } else {
+                    nextDelta++;
+                    System.out.println("Filas nuevas desde el byte " + startOffset + ": " + rows + " en "
+                        + (partitioned ? new Path(outputDir, YearPartitions.PREFIX + "*/" + delta.getName()) : delta));
+                }
+            } else if (threads == 1) {
+                IngestMetrics rangeMetrics = IngestMetrics.forSchema(schema);
+                metrics.add(rangeMetrics);
+                serializeRange(conf, schema, input, 0, Long.MAX_VALUE, outputPath(conf, outputDir, "spotify"), rangeMetrics,
+                               newQuarantine(conf, quarantineDir, 0, quarantines), dictionaries);
+            } else {
+                serializeParallel(conf, schema, input, outputDir, threads, metrics, total, quarantineDir, quarantines,
+                                  dictionaries);
+            }
+
+            if (dictionaries != null) {
+                dictionaries.save(conf, outputDir, parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)));
+                System.out.println("Diccionarios: " + dictionaries.getAlbums().size() + " albumes, "
+                    + dictionaries.getArtists().size() + " artistas, " + dictionaries.getGenres().size()
+                    + " generos en " + SpotifyDictionaries.directory(outputDir));
+            }
+
+            if (quarantineDir != null) {
+                //Los numeros de linea de cada rango se pasan a numeros de linea del
+                //archivo sumando las lineas de los rangos anteriores
+                long[] lineBases = new long[quarantines.size()];
+                long base = checkpoint != null ? checkpoint.getLines() : 0;
+                for (int i = 0; i < lineBases.length; i++) {
+                    lineBases[i] = base;
+                    base += metrics.get(i).getLines();
+                }
+                Path quarantinePath = new Path(quarantineDir, outputName + ".csv");
+                long rejected = QuarantineWriter.merge(conf, quarantines, lineBases, quarantinePath);
+                if (rejected > 0) {
+                    System.out.println("Lineas en cuarentena: " + rejected + " en " + quarantinePath);
+                }
+            }
+            completed = true;
+        } finally {
+            if (progress != null) {
+                progress.shutdownNow();
+            }
+            //El reporte se escribe aunque la ingesta falle, para ver hasta donde llegó
+            long elapsed = System.nanoTime() - startNanos;
+            for (IngestMetrics rangeMetrics : metrics) {
+                total.merge(rangeMetrics);
+            }
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("status", completed ? "completed" : "failed");
+            info.put("mode", checkpoint != null ? "incremental" : "full");
+            info.put("input", input.toString());
+            info.put("output", outputDir.toString());
+            info.put("start_offset", startOffset);
+            info.put("threads", threads);
+            info.put("tolerant", quarantineDir != null);
+            info.put("dictionary", dictionary);
+            info.put("layout", conf.get(LAYOUT_KEY, "row"));
+            info.put("partition", conf.get(PARTITION_KEY, "none"));
+            info.put("stats", conf.getBoolean(STATS_KEY, false));
+            info.put("codec", conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC));
+            Path report = new Path(outputDir, REPORT_FILE);
+            System.out.println(total.summary(elapsed));
+            try {
+                total.writeJson(conf, report, info, elapsed);
+                System.out.println("Reporte de ingesta: " + report);
+            } catch (IOException | RuntimeException e) {
+                //Si la ingesta falló, el error del reporte no debe reemplazar al original
+                if (completed) {
+                    throw e;
+                }
+                System.err.println("No se pudo escribir el reporte de ingesta " + report + ": " + e);
+            }
         }
 
-        //Se define la configuración para el archivo de salida avro
-        Configuration conf = new Configuration();
-        FileSystem fs = FileSystem.get(conf);
-        Path path = new Path(PATH);
-        if (fs.exists(path)) {
-            fs.delete(path, true);
+        //Cada linea del CSV se cuenta en exactamente un rango, por lo que los bytes
+        //leidos desde startOffset dan el offset donde termina la ultima linea procesada
+        if (incremental) {
+            long lines = (checkpoint != null ? checkpoint.getLines() : 0) + total.getLines();
+            IngestCheckpoint.compute(conf, input, startOffset + total.getBytesRead(), lines, nextDelta)
+                .save(conf, checkpointPath);
+        }
+    }
+
+    // Divide el CSV en tantos rangos de bytes como hilos y cada hilo parsea su
+    // rango y lo escribe en su propia parte spotify-part-NNNNN. Los rangos
+    // se alinean a lineas completas en SpotifyParser, asi ningun registro se
+    // pierde ni se repite. Los trabajos MapReduce leen el directorio completo,
+    // por lo que las partes se pueden usar directamente. Todos los hilos comparten
+    // los diccionarios
+    private static void serializeParallel(Configuration conf, Schema schema, Path input, Path outputDir,
+                                          int threads, List<IngestMetrics> metrics, IngestMetrics total,
+                                          Path quarantineDir, List<QuarantineWriter> quarantines,
+                                          SpotifyDictionaries dictionaries) throws IOException {
+        FileSystem fs = input.getFileSystem(conf);
+        long length = fs.getFileStatus(input).getLen();
+        long chunkSize = (length + threads - 1) / threads;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Path> parts = new ArrayList<>();
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < threads && i * chunkSize < length; i++) {
+            long start = i * chunkSize;
+            long end = Math.min(length, start + chunkSize);
+            Path part = outputPath(conf, outputDir, String.format("spotify-part-%05d", i));
+            parts.add(part);
+            IngestMetrics rangeMetrics = IngestMetrics.forSchema(schema);
+            metrics.add(rangeMetrics);
+            QuarantineWriter quarantine = newQuarantine(conf, quarantineDir, i, quarantines);
+            results.add(pool.submit(() -> serializeRange(conf, schema, input, start, end, part, rangeMetrics, quarantine,
+                                                         dictionaries)));
+        }
+
+        //Se espera a que terminen todos los hilos
+        long rows = 0;
+        try {
+            for (Future<Long> result : results) {
+                rows += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Serializacion interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Fallo la serializacion de un rango del CSV", e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
+        System.out.println("Registros serializados: " + rows + " en " + parts.size() + " partes");
 
-        //Se crea el dataFileWriter para escribir los datos en el archivo avro
-        DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(new SpecificDatumWriter<>(schema));
-        dataFileWriter.create(schema, fs.create(path));
+        if (conf.getBoolean(MERGE_KEY, false)) {
+            long mergeStart = System.nanoTime();
+            //Con particiones se unen las partes de cada año por separado
+            List<Path> dirs = isPartitioned(conf) ? YearPartitions.list(conf, outputDir) : Collections.singletonList(outputDir);
+            for (Path dir : dirs) {
+                List<Path> dirParts = new ArrayList<>();
+                for (Path part : parts) {
+                    Path dirPart = new Path(dir, part.getName());
+                    if (fs.exists(dirPart)) {
+                        dirParts.add(dirPart);
+                    }
+                }
+                if (isColumnar(conf)) {
+                    ColumnarFile.merge(conf, schema, dirParts, outputPath(conf, dir, "spotify"),
+                                       parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)),
+                                       conf.getInt(SYNC_INTERVAL_KEY, DataFileConstants.DEFAULT_SYNC_INTERVAL));
+                } else {
+                    mergeParts(conf, schema, dirParts, outputPath(conf, dir, "spotify"));
+                }
+            }
+            total.addTime(IngestMetrics.Stage.MERGE, System.nanoTime() - mergeStart);
+        }
+    }
 
-        //Se llama a la clase SpotifyParser para obtener los datos del archivo csv
+    // Crea el archivo de cuarentena temporal del rango, o retorna null si no se usa el modo tolerante
+    private static QuarantineWriter newQuarantine(Configuration conf, Path quarantineDir, int range,
+                                                  List<QuarantineWriter> quarantines) {
+        if (quarantineDir == null) {
+            return null;
+        }
+        QuarantineWriter quarantine = new QuarantineWriter(conf, new Path(quarantineDir, String.format("_range-%05d.csv", range)));
+        quarantines.add(quarantine);
+        return quarantine;
+    }
+
+    // Parsea las lineas del rango [start, end] del CSV y las escribe en output.
+    // Las filas, bytes, nulos y el tiempo de cada etapa se acumulan en metrics.
+    // Si quarantine no es null, las lineas malas se guardan ahi en lugar de
+    // detener la serializacion. Si dictionaries no es null, los textos de album,
+    // artista y genero se reemplazan por sus ids. Retorna la cantidad de registros escritos
+    private static long serializeRange(Configuration conf, Schema schema, Path input, long start, long end,
+                                       Path output, IngestMetrics metrics, QuarantineWriter quarantine,
+                                       SpotifyDictionaries dictionaries) throws IOException {
+        //Se crea el writer para escribir los datos en el archivo avro (o en los
+        //archivos de cada columna). El writer reutiliza su BinaryEncoder para
+        //todos los registros
+        TrackWriter dataFileWriter = newWriter(conf, schema, output);
+
+        //Se llama a la clase SpotifyParser para leer los datos del archivo csv.
+        //Cada linea se parsea y se escribe antes de leer la siguiente, asi la
+        //memoria usada no crece con el tamaño del archivo
         SpotifyParser parser = new SpotifyParser();
-        List<String[]> records = parser.parse(new Text(CSV_FILE_PATH));
-
-        for (String[] nextRecord : records) {
-            
-            // Se extraen los datos de cada campo y se guardan en un objeto GenericRecord
-            GenericRecord record = new GenericData.Record(schema);
-            record.put("id", nextRecord[0]);
-            record.put("track_name", nextRecord[1].isEmpty() ? null :  nextRecord[1]);
-            record.put("duration", nextRecord[2].isEmpty() ? null :  Integer.parseInt(nextRecord[2]));
-            record.put("explicit", nextRecord[3].isEmpty() ? null :  Integer.parseInt(nextRecord[3]));
-            record.put("popularity", nextRecord[4].isEmpty() ? null : Integer.parseInt(nextRecord[4]));
-            record.put("acousticness", nextRecord[5].isEmpty() ? null :  Float.parseFloat(nextRecord[5]));
-            record.put("danceability", nextRecord[6].isEmpty() ? null :  Float.parseFloat(nextRecord[6]));
-            record.put("energy", nextRecord[7].isEmpty() ? null :  Float.parseFloat(nextRecord[7]));
-            record.put("instrumentalness", nextRecord[8].isEmpty() ? null :  Float.parseFloat(nextRecord[8]));
-            record.put("key", nextRecord[9].isEmpty() ? null :  Integer.parseInt(nextRecord[9]));
-            record.put("liveness", nextRecord[10].isEmpty() ? null :  Float.parseFloat(nextRecord[10]));
-            record.put("loudness", nextRecord[11].isEmpty() ? null :  Float.parseFloat(nextRecord[11]));
-            record.put("speechiness", nextRecord[12].isEmpty() ? null :  Float.parseFloat(nextRecord[12]));
-            record.put("tempo", nextRecord[13].isEmpty() ? null :  Float.parseFloat(nextRecord[13]));
-            record.put("time_signature", nextRecord[14].isEmpty() ? null :  Integer.parseInt(nextRecord[14]));
-            record.put("valence", nextRecord[15].isEmpty() ? null :  Float.parseFloat(nextRecord[15]));
-            record.put("album_name", nextRecord[16].isEmpty() ? null :  nextRecord[16]);
-            record.put("album_type", nextRecord[17].isEmpty() ? null :  nextRecord[17]);
-            record.put("year_of_release",nextRecord[18].isEmpty() ? null : Integer.parseInt(nextRecord[18]));
-            record.put("month_of_release",nextRecord[19].isEmpty() ? null : Integer.parseInt(nextRecord[19]));
-            record.put("day_of_release",nextRecord[20].isEmpty() ? null : Integer.parseInt(nextRecord[20]));
-            record.put("weekday_of_release",nextRecord[21].isEmpty() ? null : nextRecord[21]);
-            record.put("album_popularity", nextRecord[22].isEmpty() ? null :  Integer.parseInt(nextRecord[22]));
-            record.put("artist_name", nextRecord[23].isEmpty() ? null :  nextRecord[23]);
-            record.put("artist_popularity", nextRecord[24].isEmpty() ? null :  Integer.parseInt(nextRecord[24]));
-            record.put("followers", nextRecord[25].isEmpty() ? null :  Integer.parseInt(nextRecord[25]));
-            record.put("genre_id", nextRecord[26].isEmpty() ? null :  nextRecord[26]);
-
-            //Se escribe el registro en el archivo avro
-            dataFileWriter.append(record);
-            //Se imprime el registro 
-            System.out.println(record);
-        }
-        
-        //Se cierra el archivo avro
-        dataFileWriter.close();
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        RowConverter converter = newConverter(conf);
+        int columns = schema.getFields().size();
+        try (SpotifyParser.RecordIterator records = parser.open(conf, input, start, end)) {
+            //El encabezado solo esta en el rango que empieza al inicio del archivo
+            if (start == 0 && converter.hasHeader() && records.nextLine() != null) {
+                metrics.skipLine(records.getPos());
+            }
+            long pos = records.getPos();
+            long time = System.nanoTime();
+            Text line;
+            while ((line = records.nextLine()) != null) {
+                long lineStart = pos;
+                pos = records.getPos();
+                metrics.rowRead(pos - lineStart);
+                time = lap(metrics, IngestMetrics.Stage.READ, time);
+
+                //Se separan los campos sobre los bytes de la linea, sin crear Strings
+                int fieldCount = tokenizer.tokenize(line);
+                time = lap(metrics, IngestMetrics.Stage.TOKENIZE, time);
+
+                if (quarantine != null && fieldCount != converter.columnCount()) {
+                    QuarantineWriter.Reason reason = fieldCount < converter.columnCount()
+                        ? QuarantineWriter.Reason.SHORT_ROW : QuarantineWriter.Reason.EXTRA_COLUMNS;
+                    quarantine.write(reason, records.getLineNumber(), lineStart, null, line);
+                    metrics.quarantined(reason);
+                    time = lap(metrics, IngestMetrics.Stage.CONVERT, time);
+                    continue;
+                }
+                SpotifyTrack record;
+                try {
+                    record = converter.convert(tokenizer, metrics);
+                } catch (IllegalArgumentException e) {
+                    //NumberFormatException para los numeros y IllegalArgumentException
+                    //para los textos que no son simbolos de un enum
+                    int column = converter.failedColumn(tokenizer);
+                    metrics.parseFailure(column);
+                    if (quarantine == null) {
+                        throw new IOException("Valor invalido en la linea que empieza en el byte " + lineStart
+                            + " de " + input + ": " + e.getMessage(), e);
+                    }
+                    QuarantineWriter.Reason reason = e instanceof NumberFormatException
+                        ? QuarantineWriter.Reason.INVALID_NUMBER : QuarantineWriter.Reason.INVALID_SYMBOL;
+                    quarantine.write(reason, records.getLineNumber(), lineStart,
+                                     schema.getFields().get(column).name(), line);
+                    metrics.quarantined(reason);
+                    time = lap(metrics, IngestMetrics.Stage.CONVERT, time);
+                    continue;
+                }
+                if (record == null) {
+                    metrics.rowDropped();
+                    time = lap(metrics, IngestMetrics.Stage.CONVERT, time);
+                    continue;
+                }
+                //Los nulos se cuentan con los ids y los textos, antes de quitar los textos
+                if (dictionaries != null) {
+                    dictionaries.assignIds(record);
+                }
+                for (int i = 0; i < columns; i++) {
+                    if (record.get(i) == null) {
+                        metrics.nullValue(i);
+                    }
+                }
+                if (dictionaries != null) {
+                    SpotifyDictionaries.removeNames(record);
+                }
+                time = lap(metrics, IngestMetrics.Stage.CONVERT, time);
+
+                //Se escribe el registro en el archivo avro
+                dataFileWriter.append(record);
+                metrics.rowWritten();
+                time = lap(metrics, IngestMetrics.Stage.ENCODE, time);
+            }
+        } finally {
+            if (quarantine != null) {
+                quarantine.close();
+            }
+            //Se cierra el archivo avro
+            long flushStart = System.nanoTime();
+            dataFileWriter.close();
+            metrics.addTime(IngestMetrics.Stage.FLUSH, System.nanoTime() - flushStart);
+            metrics.publish();
+        }
+        return metrics.getRowsWritten();
+    }
+
+    // Escribe los registros de un rango en la parte output
+    interface TrackWriter extends Closeable {
+        void append(SpotifyTrack record) throws IOException;
+    }
+
+    private static boolean isColumnar(Configuration conf) {
+        String layout = conf.get(LAYOUT_KEY, "row");
+        switch (layout) {
+            case "row":
+                return false;
+            case "columnar":
+                return true;
+            default:
+                throw new IllegalArgumentException("Layout de salida desconocido: " + layout);
+        }
+    }
+
+    private static boolean isPartitioned(Configuration conf) {
+        String partition = conf.get(PARTITION_KEY, "none");
+        switch (partition) {
+            case "none":
+                return false;
+            case "year":
+                return true;
+            default:
+                throw new IllegalArgumentException("Particion de salida desconocida: " + partition);
+        }
+    }
+
+    // Ruta de la parte name en el directorio de salida: name.avro o el directorio name.col
+    private static Path outputPath(Configuration conf, Path outputDir, String name) {
+        return new Path(outputDir, name + (isColumnar(conf) ? ColumnarFile.EXT : ".avro"));
+    }
+
+    // Writer de la parte output. Con particiones, la parte se escribe con el mismo
+    // nombre dentro de la particion de cada año, que se crea con la primera fila.
+    // Las partes columnares de cada año se escriben primero como registros en
+    // _<parte>.avro y se pasan a columnas al cerrar (ver ColumnarFile.fromRows)
+    private static TrackWriter newWriter(Configuration conf, Schema schema, Path output) throws IOException {
+        if (isPartitioned(conf)) {
+            boolean columnar = isColumnar(conf);
+            Map<Integer, TrackWriter> partitions = new HashMap<>();
+            return new TrackWriter() {
+                @Override
+                public void append(SpotifyTrack record) throws IOException {
+                    Integer year = record.getYearOfRelease();
+                    TrackWriter writer = partitions.get(year);
+                    if (writer == null) {
+                        Path partition = YearPartitions.directory(output.getParent(), year);
+                        writer = columnar ? newRowWriter(conf, schema, rowsPath(partition, output))
+                                          : newPartWriter(conf, schema, new Path(partition, output.getName()));
+                        partitions.put(year, writer);
+                    }
+                    writer.append(record);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    for (Map.Entry<Integer, TrackWriter> entry : partitions.entrySet()) {
+                        entry.getValue().close();
+                        if (columnar) {
+                            Path partition = YearPartitions.directory(output.getParent(), entry.getKey());
+                            ColumnarFile.fromRows(conf, rowsPath(partition, output), new Path(partition, output.getName()),
+                                parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)),
+                                conf.getInt(SYNC_INTERVAL_KEY, DataFileConstants.DEFAULT_SYNC_INTERVAL));
+                        }
+                    }
+                }
+            };
+        }
+        return newPartWriter(conf, schema, output);
+    }
+
+    // Archivo temporal con las filas de la parte columnar output en la particion
+    private static Path rowsPath(Path partition, Path output) {
+        String name = output.getName();
+        return new Path(partition, "_" + name.substring(0, name.length() - ColumnarFile.EXT.length()) + ".avro");
+    }
+
+    private static TrackWriter newPartWriter(Configuration conf, Schema schema, Path output) throws IOException {
+        if (isColumnar(conf)) {
+            ColumnarFile.Writer columns = new ColumnarFile.Writer(conf, output, schema,
+                parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)),
+                conf.getInt(SYNC_INTERVAL_KEY, DataFileConstants.DEFAULT_SYNC_INTERVAL));
+            return new TrackWriter() {
+                @Override
+                public void append(SpotifyTrack record) throws IOException {
+                    columns.append(record);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    columns.close();
+                }
+            };
+        }
+        if (conf.getBoolean(STATS_KEY, false)) {
+            return newStatsWriter(conf, schema, output);
+        }
+        return newRowWriter(conf, schema, output);
+    }
+
+    private static TrackWriter newRowWriter(Configuration conf, Schema schema, Path output) throws IOException {
+        DataFileWriter<SpotifyTrack> writer = configure(new DataFileWriter<>(new SpecificDatumWriter<>(SpotifyTrack.class)), conf);
+        writer.create(schema, output.getFileSystem(conf).create(output));
+        return new TrackWriter() {
+            @Override
+            public void append(SpotifyTrack record) throws IOException {
+                writer.append(record);
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    // Writer de registros que ademas escribe el indice de bloques. Cada registro se
+    // codifica aqui y se agrega ya codificado, asi se sabe cuantos bytes tiene el
+    // bloque: el DataFileWriter cierra el bloque cuando su buffer llega a
+    // syncInterval, que es el mismo momento en que se cierra aqui con sync()
+    private static TrackWriter newStatsWriter(Configuration conf, Schema schema, Path output) throws IOException {
+        DataFileWriter<SpotifyTrack> writer = configure(new DataFileWriter<>(new SpecificDatumWriter<>(SpotifyTrack.class)), conf);
+        writer.create(schema, output.getFileSystem(conf).create(output));
+        int syncInterval = conf.getInt(SYNC_INTERVAL_KEY, DataFileConstants.DEFAULT_SYNC_INTERVAL);
+        SpecificDatumWriter<SpotifyTrack> datumWriter = new SpecificDatumWriter<>(SpotifyTrack.class);
+        EncodedRecord encoded = new EncodedRecord();
+        BlockStatsIndex.Collector collector = new BlockStatsIndex.Collector();
+        List<BlockStats> blocks = new ArrayList<>();
+        return new TrackWriter() {
+            private BinaryEncoder encoder;
+            private long blockStart = writer.sync();
+            private long blockBytes;
+
+            @Override
+            public void append(SpotifyTrack record) throws IOException {
+                encoded.reset();
+                encoder = EncoderFactory.get().binaryEncoder(encoded, encoder);
+                datumWriter.write(record, encoder);
+                encoder.flush();
+                writer.appendEncoded(encoded.buffer());
+                collector.add(record);
+                blockBytes += encoded.size();
+                if (blockBytes >= syncInterval) {
+                    long next = writer.sync();
+                    blocks.add(collector.finish(blockStart));
+                    blockStart = next;
+                    blockBytes = 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (collector.getRows() > 0) {
+                    writer.sync();
+                    blocks.add(collector.finish(blockStart));
+                }
+                writer.close();
+                BlockStatsIndex.write(conf, output, blocks, parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)));
+            }
+        };
+    }
+
+    // Buffer del registro codificado, que se entrega al writer sin copiarlo
+    private static final class EncodedRecord extends ByteArrayOutputStream {
+        ByteBuffer buffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    // Suma a la etapa el tiempo transcurrido desde since y retorna el instante actual
+    private static long lap(IngestMetrics metrics, IngestMetrics.Stage stage, long since) {
+        long now = System.nanoTime();
+        metrics.addTime(stage, now - since);
+        return now;
+    }
+
+    // Aplica al writer el codec y el tamaño de bloque de la configuracion
+    private static <T> DataFileWriter<T> configure(DataFileWriter<T> writer, Configuration conf) {
+        writer.setCodec(parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)));
+        writer.setSyncInterval(conf.getInt(SYNC_INTERVAL_KEY, DataFileConstants.DEFAULT_SYNC_INTERVAL));
+        return writer;
+    }
+
+    // Convierte un nombre de codec con nivel opcional (por ejemplo zstandard-3) en un CodecFactory
+    public static CodecFactory parseCodec(String codec) {
+        int dash = codec.lastIndexOf('-');
+        if (dash < 0) {
+            return CodecFactory.fromString(codec);
+        }
+        String name = codec.substring(0, dash);
+        int level;
+        try {
+            level = Integer.parseInt(codec.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nivel invalido en el codec: " + codec);
+        }
+        switch (name) {
+            case DataFileConstants.DEFLATE_CODEC:
+                return CodecFactory.deflateCodec(level);
+            case DataFileConstants.XZ_CODEC:
+                return CodecFactory.xzCodec(level);
+            case DataFileConstants.ZSTANDARD_CODEC:
+                return CodecFactory.zstandardCodec(level);
+            default:
+                throw new IllegalArgumentException("El codec " + name + " no acepta nivel: " + codec);
+        }
+    }
+
+    // Une las partes en un solo archivo copiando los bloques ya codificados
+    // (sin volver a deserializar los registros) y borra las partes. Los bloques
+    // se copian tal cual, por lo que el indice de bloques de cada parte se pasa
+    // al archivo unido moviendo las posiciones
+    private static void mergeParts(Configuration conf, Schema schema, List<Path> parts, Path output) throws IOException {
+        FileSystem fs = output.getFileSystem(conf);
+        //Se usa el mismo codec de las partes para poder copiar los bloques sin recomprimir
+        DataFileWriter<GenericRecord> dataFileWriter = configure(new DataFileWriter<>(new GenericDatumWriter<>(schema)), conf);
+        dataFileWriter.create(schema, fs.create(output));
+        List<BlockStats> blocks = conf.getBoolean(STATS_KEY, false) ? new ArrayList<>() : null;
+        try {
+            for (Path part : parts) {
+                long base = dataFileWriter.sync();
+                try (DataFileStream<GenericRecord> partStream =
+                         new DataFileStream<>(fs.open(part), new GenericDatumReader<>())) {
+                    dataFileWriter.appendAllFrom(partStream, false);
+                }
+                if (blocks != null) {
+                    List<BlockStats> partBlocks = BlockStatsIndex.read(conf, part);
+                    long partStart = partBlocks.isEmpty() ? 0 : partBlocks.get(0).getOffset();
+                    for (BlockStats block : partBlocks) {
+                        block.setOffset(base + block.getOffset() - partStart);
+                        blocks.add(block);
+                    }
+                    fs.delete(BlockStatsIndex.path(part), false);
+                }
+                fs.delete(part, false);
+            }
+        } finally {
+            dataFileWriter.close();
+        }
+        if (blocks != null) {
+            BlockStatsIndex.write(conf, output, blocks, parseCodec(conf.get(CODEC_KEY, DataFileConstants.NULL_CODEC)));
+        }
+    }
+
+    // Convierte los campos de una linea del CSV en el registro SpotifyTrack que se escribe
+    interface RowConverter {
+        // Retorna el registro (reutilizado entre llamadas) o null si la fila se descarta
+        SpotifyTrack convert(CsvTokenizer fields, IngestMetrics metrics);
+
+        // Columna del esquema SpotifyTrack con el valor que hizo fallar convert()
+        int failedColumn(CsvTokenizer fields);
+
+        // Indica si la primera linea del archivo es un encabezado que se salta
+        boolean hasHeader();
+
+        // Cantidad de columnas que debe tener cada linea
+        int columnCount();
+    }
+
+    private static RowConverter newConverter(Configuration conf) {
+        String format = conf.get(FORMAT_KEY, "clean");
+        switch (format) {
+            case "clean":
+                return new RecordBuilder();
+            case "raw":
+                return new TrackCleaner();
+            default:
+                throw new IllegalArgumentException("Formato de entrada desconocido: " + format);
+        }
+    }
+
+    // Llena un unico registro SpotifyTrack con los campos de cada linea del CSV limpio.
+    // El registro y los Utf8 de las columnas de texto se reutilizan en todas las
+    // filas, por lo que no se crean Strings ni registros nuevos por linea.
+    // album_type y weekday_of_release se comparan con los simbolos de su enum
+    // sobre los bytes de la linea. Las columnas numericas si se guardan como
+    // Integer y Float: en SpotifyTrack son uniones con null y sus setters reciben
+    // el valor en caja. Se mantiene asi porque el registro lo usan tambien los
+    // diccionarios, las particiones, el indice de bloques y la salida columnar
+    private static final class RecordBuilder implements RowConverter {
+        private static final AlbumType[] ALBUM_TYPES = AlbumType.values();
+        private static final Weekday[] WEEKDAYS = Weekday.values();
+
+        private final SpotifyTrack record = new SpotifyTrack();
+        private final Utf8 id = new Utf8();
+        private final Utf8 trackName = new Utf8();
+        private final Utf8 albumName = new Utf8();
+        private final Utf8 artistName = new Utf8();
+        private final Utf8 genreId = new Utf8();
+
+        @Override
+        public SpotifyTrack convert(CsvTokenizer fields, IngestMetrics metrics) {
+            record.setId(fields.getUtf8(0, id));
+            record.setTrackName(fields.isEmpty(1) ? null : fields.getUtf8(1, trackName));
+            record.setDuration(fields.isEmpty(2) ? null : Integer.valueOf(fields.getInt(2)));
+            record.setExplicit(fields.isEmpty(3) ? null : Integer.valueOf(fields.getInt(3)));
+            record.setPopularity(fields.isEmpty(4) ? null : Integer.valueOf(fields.getInt(4)));
+            record.setAcousticness(fields.isEmpty(5) ? null : Float.valueOf(fields.getFloat(5)));
+            record.setDanceability(fields.isEmpty(6) ? null : Float.valueOf(fields.getFloat(6)));
+            record.setEnergy(fields.isEmpty(7) ? null : Float.valueOf(fields.getFloat(7)));
+            record.setInstrumentalness(fields.isEmpty(8) ? null : Float.valueOf(fields.getFloat(8)));
+            record.setKey(fields.isEmpty(9) ? null : Integer.valueOf(fields.getInt(9)));
+            record.setLiveness(fields.isEmpty(10) ? null : Float.valueOf(fields.getFloat(10)));
+            record.setLoudness(fields.isEmpty(11) ? null : Float.valueOf(fields.getFloat(11)));
+            record.setSpeechiness(fields.isEmpty(12) ? null : Float.valueOf(fields.getFloat(12)));
+            record.setTempo(fields.isEmpty(13) ? null : Float.valueOf(fields.getFloat(13)));
+            record.setTimeSignature(fields.isEmpty(14) ? null : Integer.valueOf(fields.getInt(14)));
+            record.setValence(fields.isEmpty(15) ? null : Float.valueOf(fields.getFloat(15)));
+            record.setAlbumName(fields.isEmpty(16) ? null : fields.getUtf8(16, albumName));
+            record.setAlbumType(fields.isEmpty(17) ? null : fields.getEnum(17, ALBUM_TYPES));
+            record.setYearOfRelease(fields.isEmpty(18) ? null : Integer.valueOf(fields.getInt(18)));
+            record.setMonthOfRelease(fields.isEmpty(19) ? null : Integer.valueOf(fields.getInt(19)));
+            record.setDayOfRelease(fields.isEmpty(20) ? null : Integer.valueOf(fields.getInt(20)));
+            record.setWeekdayOfRelease(fields.isEmpty(21) ? null : fields.getEnum(21, WEEKDAYS));
+            record.setAlbumPopularity(fields.isEmpty(22) ? null : Integer.valueOf(fields.getInt(22)));
+            record.setArtistName(fields.isEmpty(23) ? null : fields.getUtf8(23, artistName));
+            record.setArtistPopularity(fields.isEmpty(24) ? null : Integer.valueOf(fields.getInt(24)));
+            record.setFollowers(fields.isEmpty(25) ? null : Integer.valueOf(fields.getInt(25)));
+            record.setGenreId(fields.isEmpty(26) ? null : fields.getUtf8(26, genreId));
+            return record;
+        }
+
+        // Busca la primera columna numerica o enum que no se puede convertir. Solo
+        // se usa cuando convert() falla, para contar el error en la columna correcta
+        @Override
+        public int failedColumn(CsvTokenizer fields) {
+            List<Schema.Field> schemaFields = SpotifyTrack.getClassSchema().getFields();
+            for (int i = 0; i < schemaFields.size() && i < fields.getFieldCount(); i++) {
+                if (fields.isEmpty(i)) {
+                    continue;
+                }
+                try {
+                    for (Schema type : schemaFields.get(i).schema().getTypes()) {
+                        if (type.getType() == Schema.Type.INT) {
+                            fields.getInt(i);
+                            break;
+                        } else if (type.getType() == Schema.Type.FLOAT) {
+                            fields.getFloat(i);
+                            break;
+                        } else if (type.getType() == Schema.Type.ENUM) {
+                            if (!isSymbol(fields, i, type)) {
+                                return i;
+                            }
+                            break;
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        private static boolean isSymbol(CsvTokenizer fields, int field, Schema enumType) {
+            for (String symbol : enumType.getEnumSymbols()) {
+                if (fields.fieldEquals(field, symbol)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasHeader() {
+            return false;
+        }
+
+        // Columnas del CSV limpio (todos los campos de SpotifyTrack antes de los ids)
+        @Override
+        public int columnCount() {
+            return 27;
+        }
     }
 
 
     public static void deserializer() throws IOException {
+        deserializer(new Configuration());
+    }
+
+    // Escribe como texto todos los registros de la salida del serializador. El
+    // directorio se lee con SpotifyInputFormat, igual que en los trabajos, asi se
+    // incluyen las partes de la ingesta en paralelo, las particiones por año y las
+    // partes columnares, y los archivos v1 se leen como SpotifyTrack
+    public static void deserializer(Configuration conf) throws IOException {
         //Se establecen las rutas de los archivos necesarios para la deserialización
-        String AVRO_SCHEMA_PATH = "src/avro/spotify.avsc";
-        String INPUT_PATH = "./outputSerializado/spotify.avro";
+        String INPUT_DIR = conf.get(OUTPUT_KEY, "./outputSerializado");
         String OUTPUT_PATH = "./outputDeserializado/spotify_deserialized.txt";
-    
-        // Se carga el esquema de los datos de spotify que posee en archivo avro
-        Schema schema;
-        try {
-            schema = new Schema.Parser().parse(new File(AVRO_SCHEMA_PATH));
-        } catch(IOException e){
-            schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"spotify\",\"namespace\":\"classes.avro\",\"fields\":[{\"name\":\"id\",\"type\":[\"string\",\"null\"]},{\"name\":\"track_name\",\"type\":[\"string\",\"null\"]},{\"name\":\"duration\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"explicit\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"popularity\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"acousticness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"danceability\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"energy\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"instrumentalness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"key\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"liveness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"loudness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"speechiness\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"tempo\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"time_signature\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"valence\",\"type\":[\"float\",\"string\",\"null\"]},{\"name\":\"album_name\",\"type\":[\"string\",\"null\"]},{\"name\":\"album_type\",\"type\":[\"string\",\"null\"]},{\"name\":\"year_of_release\",\"type\":[\"int\",\"null\"]},{\"name\":\"month_of_release\",\"type\":[\"int\",\"null\"]},{\"name\":\"day_of_release\",\"type\":[\"int\",\"null\"]},{\"name\":\"weekday_of_release\",\"type\":[\"string\",\"null\"]},{\"name\":\"album_popularity\",\"type\":[\"int\",\"string\",\"null\"]},{\"name\":\"artist_name\",\"type\":[\"string\",\"null\"]},{\"name\":\"artist_popularity\",\"type\":[\"int\",\"null\",\"string\"]},{\"name\":\"followers\",\"type\":[\"int\",\"null\",\"string\"]},{\"name\":\"genre_id\",\"type\":[\"string\",\"null\"]}]}");
-        }
-    
-        //Se abre el archivo avro para leer los registros
-        Configuration conf = new Configuration();
-        Path inputPath = new Path(INPUT_PATH);
-        DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
-        FsInput fsInput = new FsInput(inputPath, conf);
-        DataFileReader<GenericRecord> dataFileReader = new DataFileReader<>(fsInput, datumReader);
-    
+
+        JobConf job = new JobConf(conf);
+        SpotifyInputFormat.configure(job);
+        SpotifyInputFormat.setInputPaths(job, new Path(INPUT_DIR));
+        SpotifyInputFormat inputFormat = new SpotifyInputFormat();
+
         //Se crea el archivo de salida y se borra si ya existe
         FileSystem fs = FileSystem.get(conf);
         Path outputPath = new Path(OUTPUT_PATH);
@@ -135,34 +874,43 @@ public class SpotifySerializer {
         }
         FSDataOutputStream outputStream = fs.create(outputPath);
 
-        //Se escriben los registros deserializados en el archivo de salida
+        //Se escriben los registros deserializados en el archivo de salida, un split a la vez
         try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"))) {
-            GenericRecord record = null;
-            while (dataFileReader.hasNext()) {
-                record = dataFileReader.next(record);
-                writer.write(record.toString());
-                writer.newLine();
+            for (InputSplit split : inputFormat.getSplits(job, 1)) {
+                RecordReader<AvroWrapper<SpotifyTrack>, NullWritable> reader =
+                    inputFormat.getRecordReader(split, job, Reporter.NULL);
+                try {
+                    AvroWrapper<SpotifyTrack> record = reader.createKey();
+                    NullWritable ignore = reader.createValue();
+                    while (reader.next(record, ignore)) {
+                        writer.write(record.datum().toString());
+                        writer.newLine();
+                    }
+                } finally {
+                    reader.close();
+                }
             }
         }
-
-        // Close the Avro file
-        dataFileReader.close();
     
         System.out.println("Deserialized records written to " + OUTPUT_PATH);
     }
 
     public static void main(String[] args) throws IOException, CsvValidationException {
+        //Se leen las opciones -D y se dejan solo los argumentos restantes
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+
         //Verifica que el número de argumentos sea correcto
         if (args.length != 1) {
-            System.out.println("Usage: GenerateSpotify <flag>");
+            System.out.println("Usage: GenerateSpotify [-D opcion=valor ...] <flag>");
             System.exit(1);
         }
         //Se obtiene el flag para determinar si se serializa o deserializa
         String flag = args[0];
         if (flag.equals("serializer")) { 
-            serializer();
+            serializer(conf);
         } else if (flag.equals("deserializer")) { 
-            deserializer();
+            deserializer(conf);
         } else {
             System.out.println("Invalid flag. Use 'serializer' or 'deserializer'.");
         }
@@ -0,0 +1,93 @@
+/**
+ * Este archivo contiene la clase StringDictionary que asigna un id entero a cada
+ * texto distinto de una columna y lo guarda en un archivo avro aparte.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.mapred.FsInput;
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+// Los ids van de 0 a size() - 1 en el orden en que aparece cada texto. El archivo
+// es un avro de strings donde la posicion de cada texto es su id, por lo que los
+// ids de un diccionario cargado y extendido (ingesta incremental) no cambian.
+// La busqueda no usa locks y se puede hacer desde varios hilos; solo agregar un
+// texto nuevo se sincroniza. Con varios hilos los ids dependen del orden en que
+// cada hilo encuentra los textos
+public class StringDictionary {
+
+    private static final Schema SCHEMA = Schema.create(Schema.Type.STRING);
+
+    private final ConcurrentHashMap<Utf8, Integer> ids = new ConcurrentHashMap<>();
+    private final List<Utf8> values = new ArrayList<>();
+
+    // Retorna el id del texto, agregandolo si no existe. value puede ser un
+    // buffer reutilizado: el diccionario guarda su propia copia
+    public int idOf(Utf8 value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id == null) {
+                Utf8 copy = new Utf8(value);
+                id = values.size();
+                values.add(copy);
+                ids.put(copy, id);
+            }
+            return id;
+        }
+    }
+
+    // Texto del id. El Utf8 es compartido y no se debe modificar
+    public synchronized Utf8 get(int id) {
+        return values.get(id);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    // Textos ordenados por id, para buscar sin sincronizacion una vez terminada la carga
+    public synchronized Utf8[] toArray() {
+        return values.toArray(new Utf8[0]);
+    }
+
+    public static StringDictionary load(Configuration conf, Path path) throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        try (DataFileReader<Utf8> reader = new DataFileReader<>(new FsInput(path, conf), new GenericDatumReader<>(SCHEMA))) {
+            while (reader.hasNext()) {
+                Utf8 value = reader.next();
+                dictionary.ids.put(value, dictionary.values.size());
+                dictionary.values.add(value);
+            }
+        }
+        return dictionary;
+    }
+
+    public synchronized void save(Configuration conf, Path path, CodecFactory codec) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (DataFileWriter<Utf8> writer = new DataFileWriter<>(new GenericDatumWriter<>(SCHEMA))) {
+            writer.setCodec(codec);
+            writer.create(SCHEMA, fs.create(path, true));
+            for (Utf8 value : values) {
+                writer.append(value);
+            }
+        }
+    }
+}
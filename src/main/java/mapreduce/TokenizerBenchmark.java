@@ -0,0 +1,184 @@
+/**
+ * Este archivo contiene la clase TokenizerBenchmark que compara el tiempo de
+ * parseo del CSV limpio entre SpotifyParser.parseCSVLine y CsvTokenizer.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+import classes.avro.AlbumType;
+import classes.avro.Weekday;
+
+// Uso: TokenizerBenchmark <csv limpio> [repeticiones]
+// Recorre el archivo varias veces con cada parser convirtiendo todas las columnas
+// a su tipo e imprime las lineas por segundo. Del lado de CsvTokenizer se hacen
+// las mismas llamadas que RecordBuilder en SpotifySerializer: getUtf8 sobre un Utf8
+// reutilizado, getInt y getFloat sin boxing y getEnum para los enums.
+// Antes de medir verifica que ambos parsers producen los mismos valores
+public class TokenizerBenchmark {
+
+    // Tipo de cada columna del CSV limpio: s = texto, i = int, f = float, e = enum
+    private static final String TYPES = "ssiiiffffiffffifseiiieisiis";
+    // Simbolos de las columnas enum (album_type y weekday_of_release)
+    private static final AlbumType[] ALBUM_TYPES = AlbumType.values();
+    private static final Weekday[] WEEKDAYS = Weekday.values();
+
+    // Suma de los valores parseados en todas las pasadas. Se imprime al final para
+    // que el JIT no pueda eliminar el parseo por no usarse
+    private static long checksum;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: TokenizerBenchmark <csv path> [repetitions]");
+            System.exit(1);
+        }
+        Path input = new Path(args[0]);
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Configuration conf = new Configuration();
+
+        long mismatches = verify(conf, input);
+        System.out.println("Diferencias entre parsers: " + mismatches);
+
+        //Se hace una pasada de calentamiento de cada parser antes de medir
+        runLegacy(conf, input);
+        runTokenizer(conf, input);
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            long lines = runLegacy(conf, input);
+            report("parseCSVLine", lines, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            lines = runTokenizer(conf, input);
+            report("CsvTokenizer", lines, System.nanoTime() - start);
+        }
+        System.out.println("Checksum: " + checksum);
+    }
+
+    private static void report(String name, long lines, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf(Locale.ROOT, "%-13s %,d lineas en %.3f s (%,.0f lineas/s)%n", name, lines, seconds, lines / seconds);
+    }
+
+    private static long runLegacy(Configuration conf, Path input) throws IOException {
+        long lines = 0;
+        try (SpotifyParser.RecordIterator records = new SpotifyParser().open(conf, input, 0, Long.MAX_VALUE)) {
+            while (records.hasNext()) {
+                String[] fields = records.next();
+                for (int i = 0; i < TYPES.length(); i++) {
+                    if (fields[i].isEmpty()) {
+                        continue;
+                    }
+                    switch (TYPES.charAt(i)) {
+                        case 's':
+                            checksum += new Utf8(fields[i]).getByteLength();
+                            break;
+                        case 'i':
+                            checksum += Integer.parseInt(fields[i]);
+                            break;
+                        case 'f':
+                            checksum += Float.floatToIntBits(Float.parseFloat(fields[i]));
+                            break;
+                        default:
+                            checksum += (i == 17 ? AlbumType.valueOf(fields[i]) : Weekday.valueOf(fields[i])).ordinal();
+                    }
+                }
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static long runTokenizer(Configuration conf, Path input) throws IOException {
+        long lines = 0;
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        //Un Utf8 por columna, reutilizado en todas las lineas como en RecordBuilder
+        Utf8[] texts = new Utf8[TYPES.length()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = new Utf8();
+        }
+        try (SpotifyParser.RecordIterator records = new SpotifyParser().open(conf, input, 0, Long.MAX_VALUE)) {
+            Text line;
+            while ((line = records.nextLine()) != null) {
+                tokenizer.tokenize(line);
+                for (int i = 0; i < TYPES.length(); i++) {
+                    if (tokenizer.isEmpty(i)) {
+                        continue;
+                    }
+                    switch (TYPES.charAt(i)) {
+                        case 's':
+                            checksum += tokenizer.getUtf8(i, texts[i]).getByteLength();
+                            break;
+                        case 'i':
+                            checksum += tokenizer.getInt(i);
+                            break;
+                        case 'f':
+                            checksum += Float.floatToIntBits(tokenizer.getFloat(i));
+                            break;
+                        default:
+                            checksum += (i == 17 ? tokenizer.getEnum(i, ALBUM_TYPES) : tokenizer.getEnum(i, WEEKDAYS)).ordinal();
+                    }
+                }
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // Compara campo por campo los valores de ambos parsers y retorna la cantidad de diferencias
+    private static long verify(Configuration conf, Path input) throws IOException {
+        long mismatches = 0;
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        Utf8 text = new Utf8();
+        try (SpotifyParser.RecordIterator records = new SpotifyParser().open(conf, input, 0, Long.MAX_VALUE)) {
+            Text line;
+            while ((line = records.nextLine()) != null) {
+                String[] fields = SpotifyParser.parseCSVLine(line.toString());
+                tokenizer.tokenize(line);
+                for (int i = 0; i < TYPES.length(); i++) {
+                    Object expected = legacyValue(fields[i], i);
+                    Object actual = tokenizerValue(tokenizer, i, text);
+                    if (!expected.equals(actual)) {
+                        if (mismatches < 10) {
+                            System.out.println("Linea " + records.getLineNumber() + " columna " + i
+                                + ": " + expected + " != " + actual);
+                        }
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static Object legacyValue(String field, int column) {
+        char type = TYPES.charAt(column);
+        if (field.isEmpty() || type == 's') {
+            return field;
+        }
+        if (type == 'e') {
+            return column == 17 ? (Object) AlbumType.valueOf(field) : (Object) Weekday.valueOf(field);
+        }
+        return type == 'i' ? (Object) Integer.parseInt(field) : (Object) Float.parseFloat(field);
+    }
+
+    private static Object tokenizerValue(CsvTokenizer tokenizer, int field, Utf8 text) {
+        char type = TYPES.charAt(field);
+        if (tokenizer.isEmpty(field)) {
+            return "";
+        }
+        if (type == 's') {
+            return tokenizer.getUtf8(field, text).toString();
+        }
+        if (type == 'e') {
+            return field == 17 ? tokenizer.getEnum(field, ALBUM_TYPES) : tokenizer.getEnum(field, WEEKDAYS);
+        }
+        return type == 'i' ? (Object) tokenizer.getInt(field) : (Object) tokenizer.getFloat(field);
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Este archivo contiene la clase TrackCleaner que limpia las lineas del tracks.csv
+ * original y las convierte directamente en registros SpotifyTrack, haciendo el mismo
+ * trabajo que Pig/spotify_cleaning_mapreduce.pig y get_release_date.py.
+ */
+
+package mapreduce;
+
+import java.time.DateTimeException;
+
+import org.apache.avro.util.Utf8;
+
+import classes.avro.AlbumType;
+import classes.avro.SpotifyTrack;
+import classes.avro.Weekday;
+
+// Se usa desde SpotifySerializer con -D spotify.serializer.format=raw. Sigue las
+// reglas del script de Pig:
+//  - Se salta el encabezado del archivo
+//  - Se descartan las filas sin valence (vacio o no numerico)
+//  - Los valores numericos que no se pueden convertir quedan en null, como en la
+//    carga de Pig con tipos (se cuentan como invalidos en las metricas)
+//  - El año, mes, dia y dia de la semana se obtienen de release_date (epoch en
+//    milisegundos) con ReleaseDateCache
+//  - Un genre_id vacio pasa a ser Unknown
+//  - Un album_type que no es album, single o compilation queda en null (se
+//    cuenta como invalido)
+// El registro y los buffers de texto se reutilizan entre filas
+public class TrackCleaner implements SpotifySerializer.RowConverter {
+
+    // Columnas del tracks.csv original
+    private static final int ID = 0;
+    private static final int TRACK_NAME = 1;
+    private static final int DURATION = 3;
+    private static final int EXPLICIT = 4;
+    private static final int POPULARITY = 8;
+    private static final int ACOUSTICNESS = 10;
+    private static final int DANCEABILITY = 11;
+    private static final int ENERGY = 12;
+    private static final int INSTRUMENTALNESS = 13;
+    private static final int KEY = 14;
+    private static final int LIVENESS = 15;
+    private static final int LOUDNESS = 16;
+    private static final int SPEECHINESS = 18;
+    private static final int TEMPO = 19;
+    private static final int TIME_SIGNATURE = 20;
+    private static final int VALENCE = 21;
+    private static final int ALBUM_NAME = 22;
+    private static final int ALBUM_TYPE = 24;
+    private static final int RELEASE_DATE = 25;
+    private static final int ALBUM_POPULARITY = 26;
+    private static final int ARTIST_NAME = 27;
+    private static final int ARTIST_POPULARITY = 28;
+    private static final int FOLLOWERS = 29;
+    private static final int GENRE_ID = 30;
+
+    private static final Utf8 UNKNOWN_GENRE = new Utf8("Unknown");
+    private static final AlbumType[] ALBUM_TYPES = AlbumType.values();
+
+    private final SpotifyTrack record = new SpotifyTrack();
+    private final ReleaseDateCache dates = new ReleaseDateCache();
+    private final Utf8 id = new Utf8();
+    private final Utf8 trackName = new Utf8();
+    private final Utf8 albumName = new Utf8();
+    private final Utf8 artistName = new Utf8();
+    private final Utf8 genreId = new Utf8();
+    private IngestMetrics metrics;
+
+    @Override
+    public SpotifyTrack convert(CsvTokenizer fields, IngestMetrics metrics) {
+        this.metrics = metrics;
+        //Igual que el FILTER del script de Pig, se descartan las filas sin valence
+        Float valence = floatOrNull(fields, VALENCE, 15);
+        if (valence == null) {
+            return null;
+        }
+
+        record.setId(fields.getUtf8(ID, id));
+        record.setTrackName(textOrNull(fields, TRACK_NAME, trackName));
+        record.setDuration(intOrNull(fields, DURATION, 2));
+        record.setExplicit(intOrNull(fields, EXPLICIT, 3));
+        record.setPopularity(intOrNull(fields, POPULARITY, 4));
+        record.setAcousticness(floatOrNull(fields, ACOUSTICNESS, 5));
+        record.setDanceability(floatOrNull(fields, DANCEABILITY, 6));
+        record.setEnergy(floatOrNull(fields, ENERGY, 7));
+        record.setInstrumentalness(floatOrNull(fields, INSTRUMENTALNESS, 8));
+        record.setKey(intOrNull(fields, KEY, 9));
+        record.setLiveness(floatOrNull(fields, LIVENESS, 10));
+        record.setLoudness(floatOrNull(fields, LOUDNESS, 11));
+        record.setSpeechiness(floatOrNull(fields, SPEECHINESS, 12));
+        record.setTempo(floatOrNull(fields, TEMPO, 13));
+        record.setTimeSignature(intOrNull(fields, TIME_SIGNATURE, 14));
+        record.setValence(valence);
+        record.setAlbumName(textOrNull(fields, ALBUM_NAME, albumName));
+        record.setAlbumType(enumOrNull(fields, ALBUM_TYPE, ALBUM_TYPES, 17));
+        setReleaseDate(fields);
+        record.setAlbumPopularity(intOrNull(fields, ALBUM_POPULARITY, 22));
+        record.setArtistName(textOrNull(fields, ARTIST_NAME, artistName));
+        record.setArtistPopularity(intOrNull(fields, ARTIST_POPULARITY, 24));
+        record.setFollowers(intOrNull(fields, FOLLOWERS, 25));
+        //Si el género está vacío se pasa a Unknown
+        Utf8 genre = textOrNull(fields, GENRE_ID, genreId);
+        record.setGenreId(genre == null ? UNKNOWN_GENRE : genre);
+        return record;
+    }
+
+    // Igual que get_release_date.py: se quitan los ultimos 3 digitos del epoch
+    // (milisegundos a segundos) y si no queda un numero, o el epoch no es una
+    // fecha valida, la fecha queda en null
+    private void setReleaseDate(CsvTokenizer fields) {
+        Integer year = null;
+        Integer month = null;
+        Integer day = null;
+        Weekday weekday = null;
+        if (RELEASE_DATE < fields.getFieldCount() && !fields.isEmpty(RELEASE_DATE)) {
+            try {
+                int date = dates.lookup(fields.getLong(RELEASE_DATE, 3));
+                year = ReleaseDateCache.year(date);
+                month = ReleaseDateCache.month(date);
+                day = ReleaseDateCache.day(date);
+                weekday = ReleaseDateCache.weekday(date);
+            } catch (NumberFormatException | DateTimeException e) {
+                metrics.parseFailure(18);
+            }
+        }
+        record.setYearOfRelease(year);
+        record.setMonthOfRelease(month);
+        record.setDayOfRelease(day);
+        record.setWeekdayOfRelease(weekday);
+    }
+
+    private Utf8 textOrNull(CsvTokenizer fields, int column, Utf8 reuse) {
+        if (column >= fields.getFieldCount() || fields.isEmpty(column)) {
+            return null;
+        }
+        return fields.getUtf8(column, reuse);
+    }
+
+    // target es la columna del esquema SpotifyTrack donde se cuenta el valor invalido
+    private Integer intOrNull(CsvTokenizer fields, int column, int target) {
+        if (column >= fields.getFieldCount() || fields.isEmpty(column)) {
+            return null;
+        }
+        try {
+            return fields.getInt(column);
+        } catch (NumberFormatException e) {
+            metrics.parseFailure(target);
+            return null;
+        }
+    }
+
+    private Float floatOrNull(CsvTokenizer fields, int column, int target) {
+        if (column >= fields.getFieldCount() || fields.isEmpty(column)) {
+            return null;
+        }
+        try {
+            return fields.getFloat(column);
+        } catch (NumberFormatException e) {
+            metrics.parseFailure(target);
+            return null;
+        }
+    }
+
+    private <E extends Enum<E>> E enumOrNull(CsvTokenizer fields, int column, E[] values, int target) {
+        if (column >= fields.getFieldCount() || fields.isEmpty(column)) {
+            return null;
+        }
+        try {
+            return fields.getEnum(column, values);
+        } catch (IllegalArgumentException e) {
+            metrics.parseFailure(target);
+            return null;
+        }
+    }
+
+    // Los valores invalidos se convierten en null, por lo que convert() nunca falla
+    @Override
+    public int failedColumn(CsvTokenizer fields) {
+        return 0;
+    }
+
+    @Override
+    public boolean hasHeader() {
+        return true;
+    }
+
+    @Override
+    public int columnCount() {
+        return GENRE_ID + 1;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Este archivo contiene la clase YearPartitions con los nombres de las particiones
+ * year=YYYY de la salida del serializador y el rango de años de los trabajos.
+ */
+
+package mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+// Con -D spotify.serializer.partition=year el serializador escribe cada fila en
+// <salida>/year=YYYY/ segun year_of_release (year=null para los años nulos).
+// Con -D spotify.input.years=2010-2020 (o un solo año) los trabajos solo leen las
+// particiones de esos años; si la entrada no esta particionada las filas fuera
+// del rango se descartan al leer, asi el resultado no depende del layout
+public class YearPartitions {
+
+    public static final String PREFIX = "year=";
+    public static final String NULL_YEAR = "null";
+    public static final String YEARS_KEY = "spotify.input.years";
+
+    // Directorio de la particion del año (null para los años nulos)
+    public static Path directory(Path outputDir, Integer year) {
+        return new Path(outputDir, PREFIX + (year == null ? NULL_YEAR : year.toString()));
+    }
+
+    public static boolean isPartition(Path path) {
+        return path != null && path.getName().startsWith(PREFIX);
+    }
+
+    // Año de la particion, o null si es la particion de los años nulos
+    public static Integer year(Path partition) {
+        String value = partition.getName().substring(PREFIX.length());
+        return NULL_YEAR.equals(value) ? null : Integer.valueOf(value);
+    }
+
+    // Particiones del directorio, ordenadas por nombre. Si no esta particionado retorna una lista vacia
+    public static List<Path> list(Configuration conf, Path dir) throws IOException {
+        List<Path> partitions = new ArrayList<>();
+        FileStatus[] statuses = dir.getFileSystem(conf).globStatus(new Path(dir, PREFIX + "*"));
+        if (statuses != null) {
+            for (FileStatus status : statuses) {
+                if (status.isDirectory()) {
+                    partitions.add(status.getPath());
+                }
+            }
+        }
+        return partitions;
+    }
+
+    // Rango de años [from, to] de spotify.input.years, o null si el trabajo lee todos los años
+    public static Range getRange(Configuration conf) {
+        String years = conf.getTrimmed(YEARS_KEY);
+        return years == null || years.isEmpty() ? null : Range.parse(years);
+    }
+
+    public static class Range {
+        private final int from;
+        private final int to;
+
+        public Range(int from, int to) {
+            if (from > to) {
+                throw new IllegalArgumentException("Rango de años invalido: " + from + "-" + to);
+            }
+            this.from = from;
+            this.to = to;
+        }
+
+        // Acepta un año (2015) o un rango con los dos extremos incluidos (2010-2020)
+        public static Range parse(String years) {
+            int dash = years.indexOf('-', 1);
+            try {
+                if (dash < 0) {
+                    int year = Integer.parseInt(years.trim());
+                    return new Range(year, year);
+                }
+                return new Range(Integer.parseInt(years.substring(0, dash).trim()),
+                                 Integer.parseInt(years.substring(dash + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Rango de años invalido en " + YEARS_KEY + ": " + years);
+            }
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public boolean contains(Integer year) {
+            return year != null && year >= from && year <= to;
+        }
+
+        @Override
+        public String toString() {
+            return from + "-" + to;
+        }
+    }
+
+    // Entradas del trabajo para leer input: las particiones del rango si input
+    // esta particionado, o input completo si no lo esta
+    public static List<Path> inputPaths(Configuration conf, Path input) throws IOException {
+        FileSystem fs = input.getFileSystem(conf);
+        List<Path> partitions = fs.getFileStatus(input).isDirectory() ? list(conf, input) : new ArrayList<>();
+        if (partitions.isEmpty()) {
+            partitions.add(input);
+            return partitions;
+        }
+        Range range = getRange(conf);
+        if (range == null) {
+            return partitions;
+        }
+        List<Path> selected = new ArrayList<>();
+        for (Path partition : partitions) {
+            if (range.contains(year(partition))) {
+                selected.add(partition);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IOException("Ninguna particion de " + input + " esta en el rango de años " + range);
+        }
+        return selected;
+    }
+}
@@ -2,13 +2,7 @@ package mapreduce;
 
 import java.io.IOException;
 import java.io.File;
-import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.avro.*;
@@ -26,160 +20,90 @@ import org.apache.hadoop.util.*;
 
 
 // Esquemas usados
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
+import classes.avro.AlbumKey;
+import classes.avro.AlbumPopularity;
 import classes.avro.PopularityAnalysis;
 
 
 public class AlbumPopularityAnalysis extends Configured implements Tool {
 
+    // Mapper: la clave tiene el año y el nombre del album, asi las filas del mismo
+    // album llegan juntas al reducer, y el valor el nombre y su popularidad
     public static class AlbumPopularityAnalysisMapper 
-    extends AvroMapper<spotify, Pair<Integer, PopularityAnalysis>> 
+    extends AvroMapper<SpotifyTrack, Pair<AlbumKey, AlbumPopularity>> 
     {
 
         @Override
-        public void map(spotify track, 
-                        AvroCollector<Pair<Integer, PopularityAnalysis>> collector, 
+        public void map(SpotifyTrack track, 
+                        AvroCollector<Pair<AlbumKey, AlbumPopularity>> collector, 
                         Reporter reporter)
         throws IOException 
         {
 
             Integer year = track.getYearOfRelease();
-            Integer p = (Integer) track.getAlbumPopularity();
+            Integer p = track.getAlbumPopularity();
             CharSequence name = track.getAlbumName();
  
             if (year != null && year != 1 && p != null && name != null ) 
             {
-                PopularityAnalysis PA = new PopularityAnalysis(name, p, p, p, 0, 0.0, 0.0, 0.0, 0.0);
-                collector.collect(new Pair<Integer, PopularityAnalysis>(year, PA));
+                collector.collect(new Pair<AlbumKey, AlbumPopularity>(new AlbumKey(year, 0, name),
+                                                                      new AlbumPopularity(name, p)));
             } 
 
         }
     }
 
+    // Reducer: los albumes del año llegan ordenados por nombre, asi que los
+    // repetidos se descartan comparando cada uno con el anterior y la popularidad
+    // de cada album se cuenta una vez en un histograma de 0 a 100
     public static class AlbumPopularityAnalysisReducer 
-        extends AvroReducer<Integer, 
-                            PopularityAnalysis, 
+        extends AvroReducer<AlbumKey, 
+                            AlbumPopularity, 
                             Pair<Integer, PopularityAnalysis>> 
     {
 
-        public static double calculateMedian(Integer[] data) {
+        // Queremos los datos de los albumes no repetidos
+        private final DistinctAlbums.SortedAlbums uniqueAlbums = new DistinctAlbums.SortedAlbums();
 
-            int n = data.length;
-            
-            if (n % 2 == 0) {
-                return (data[n / 2 - 1] + data[n / 2]) / 2.0;
-            } else {
-                return data[n / 2];
-            }
-        }
+        // Cantidad de albumes por popularidad, de donde salen todas las estadisticas
+        private final PopularityHistogram histogram = new PopularityHistogram();
 
         @Override
-        public void reduce( Integer key, 
-                            Iterable<PopularityAnalysis> values, 
+        public void reduce( AlbumKey key, 
+                            Iterable<AlbumPopularity> values, 
                             AvroCollector<Pair<Integer,PopularityAnalysis>> collector,
                             Reporter reporter) 
         throws IOException 
         {
+            // La clave es la del primer valor del grupo, solo se usa su año
+            Integer year = key.getYear();
+            uniqueAlbums.clear();
+            histogram.clear();
 
-            // Cantidad de items
-            Integer n = 0;
-
-            // Max
-            Integer max = Integer.MIN_VALUE;
-
-            // Min
-            Integer min = Integer.MAX_VALUE;
-
-            // Dict para determinar moda
-            Map<Integer, Integer> popularityValuesMap = new HashMap<>();
-
-            // Queremos los datos de los albumes no repetidos
-            Set<CharSequence> uniqueAlbums = new HashSet<>();
-
-            // Lista para calcular cuartiles 
-            List<Integer> popularityValuesList = new ArrayList<>();
-
-            // El rango, la media y el IQR se calculan al final
-
-            for (PopularityAnalysis PA : values) 
+            for (AlbumPopularity album : values) 
             {
-                CharSequence name = PA.getAlbums().toString();
-                if (uniqueAlbums.add(name)){
-                    // Sabemos que la mayoria de los campos tienen la 
-                    // popularidad asociada al album
-                    Integer p = PA.getMode();
-
-                    if (p > max){
-                        max = Integer.valueOf(p);
-                    }
-
-                    if (p < min){
-                        min = Integer.valueOf(p);
-                    }
-
-                    popularityValuesMap.putIfAbsent(Integer.valueOf(p), 0);
-                    Integer count = popularityValuesMap.get(Integer.valueOf(p));
-                    popularityValuesMap.put(Integer.valueOf(p), count + 1);
-
-                    popularityValuesList.add(Integer.valueOf(p));
-                    n++;
-                }
-            }
-
-            // Calculo de cuartiles
-            double q1 = 0.0, q2 = 0.0, q3 = 0.0;
-
-            if (n == 1){
-                q1 = popularityValuesList.get(0);
-                q2 = popularityValuesList.get(0);
-                q3 = popularityValuesList.get(0);
-            } else if (n > 1)
-            {
-                Integer[] popularityValuesArray = popularityValuesList.toArray(new Integer[0]);
-
-                // Hay que ordenar el arreglo y calcular los cuartiles
-                Arrays.sort(popularityValuesArray);
-
-                q2 = calculateMedian(popularityValuesArray);
-
-                // Dividir el arreglo para Q1 y Q3
-                Integer[] lowerHalf = Arrays.copyOfRange(popularityValuesArray, 0, n / 2);
-
-                int startIndex;
-                if (n % 2 == 0) {
-                    startIndex = n / 2;
-                } else {
-                    startIndex = n / 2 + 1;
+                if (uniqueAlbums.add(album.getAlbum()) && !histogram.add(album.getPopularity()))
+                {
+                    reporter.incrCounter(PopularityHistogram.Counter.INVALID_POPULARITY, 1);
                 }
-            
-                Integer[] upperHalf = Arrays.copyOfRange(popularityValuesArray, startIndex, n);
-
-                // Q1 (mediana de la mitad inferior)
-                q1 = calculateMedian(lowerHalf);
-
-                // Q3 (mediana de la mitad superior)
-                q3 = calculateMedian(upperHalf);
             }
 
-    
-            // A partir de las llaves del diccionario hay que determinar cual
-            // popularidad se repite mas 
-            Integer mode = -1;
-            Integer modeCount = Integer.MIN_VALUE;
-            Set<Integer> keys = popularityValuesMap.keySet();
-            for (Integer popkey : keys) 
+            // Si ningun album del año tiene una popularidad valida no hay estadisticas
+            if (histogram.size() == 0)
             {
-                if (popularityValuesMap.get(popkey) > modeCount) 
-                {
-                    modeCount = Integer.valueOf(popularityValuesMap.get(popkey));
-                    mode = Integer.valueOf(popkey);
-                }
+                return;
             }
 
-                
-            PopularityAnalysis PA = new PopularityAnalysis(n.toString(), min, max, mode,
-                                                            max - min, q1, q2, q3, q3 - q1 );
-            collector.collect(new Pair<Integer, PopularityAnalysis>(key , PA));
+            // El rango y el IQR se calculan a partir del resto
+            int min = histogram.min();
+            int max = histogram.max();
+            double q1 = histogram.q1();
+            double q3 = histogram.q3();
+            PopularityAnalysis PA = new PopularityAnalysis(String.valueOf(histogram.size()), min, max,
+                                                           histogram.mode(), max - min, q1, histogram.q2(),
+                                                           q3, q3 - q1);
+            collector.collect(new Pair<Integer, PopularityAnalysis>(year , PA));
         }
     }
 
@@ -204,15 +128,19 @@ public class AlbumPopularityAnalysis extends Configured implements Tool {
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         // Establecemos los paths de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        // Establecemos el mappper y reducer
+        // Establecemos el mappper, el combiner y el reducer. Las claves se agrupan
+        // por año y el combiner deja una sola fila por album repetido en el mapper
         AvroJob.setMapperClass(conf, AlbumPopularityAnalysisMapper.class);
+        AvroJob.setCombinerClass(conf, AvroSecondarySort.DistinctCombiner.class);
         AvroJob.setReducerClass(conf, AlbumPopularityAnalysisReducer.class);
+        AvroSecondarySort.configure(conf, AlbumKey.getClassSchema(), AlbumPopularity.getClassSchema(), 1);
 
         // Especificamos el esquema Avro de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "album_name", "album_popularity");
         Schema PASchema = PopularityAnalysis.getClassSchema();
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.INT), PASchema));
 
@@ -238,7 +166,9 @@ public class AlbumPopularityAnalysis extends Configured implements Tool {
             System.out.println("Trabajo terminado con éxito");
 
             //Comienzo del proceso de deserialización
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
 
             for (File outputFile : outputFiles) 
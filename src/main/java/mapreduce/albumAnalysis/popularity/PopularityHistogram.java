@@ -0,0 +1,102 @@
+/**
+ * Este archivo contiene la clase PopularityHistogram que calcula las
+ * estadisticas de popularidad de los albumes de un año sin guardar los valores.
+ */
+
+package mapreduce;
+
+import java.util.Arrays;
+
+// La popularidad es un entero de 0 a 100, asi que basta contar cuantos albumes
+// tienen cada popularidad. Los valores ordenados se recorren con las cuentas
+// acumuladas, y el minimo, el maximo, la moda y los cuartiles salen exactos con
+// memoria fija. Se puede reutilizar entre llamadas a reduce() con clear()
+public class PopularityHistogram {
+
+    public static final int MAX_POPULARITY = 100;
+
+    // Contador de Hadoop para las popularidades fuera de [0, MAX_POPULARITY]
+    public enum Counter { INVALID_POPULARITY }
+
+    private final int[] counts = new int[MAX_POPULARITY + 1];
+    private int size;
+
+    // Agrega la popularidad y retorna true, o retorna false sin agregarla si esta
+    // fuera de [0, MAX_POPULARITY], para que una fila sucia no detenga el reducer
+    public boolean add(int popularity) {
+        if (popularity < 0 || popularity > MAX_POPULARITY) {
+            return false;
+        }
+        counts[popularity]++;
+        size++;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int min() {
+        return valueAt(0);
+    }
+
+    public int max() {
+        return valueAt(size - 1);
+    }
+
+    // Popularidad mas repetida; si hay empate, la menor
+    public int mode() {
+        int mode = -1;
+        int modeCount = 0;
+        for (int popularity = 0; popularity <= MAX_POPULARITY; popularity++) {
+            if (counts[popularity] > modeCount) {
+                modeCount = counts[popularity];
+                mode = popularity;
+            }
+        }
+        return mode;
+    }
+
+    // Los cuartiles son las medianas de la mitad inferior y superior de los
+    // valores ordenados, sin contar la mediana cuando la cantidad es impar
+    public double q1() {
+        return size == 1 ? valueAt(0) : median(0, size / 2);
+    }
+
+    public double q2() {
+        return median(0, size);
+    }
+
+    public double q3() {
+        return size == 1 ? valueAt(0) : median(size % 2 == 0 ? size / 2 : size / 2 + 1, size);
+    }
+
+    // Mediana de los valores ordenados en las posiciones [from, to)
+    private double median(int from, int to) {
+        int n = to - from;
+        if (n % 2 == 0) {
+            return (valueAt(from + n / 2 - 1) + valueAt(from + n / 2)) / 2.0;
+        }
+        return valueAt(from + n / 2);
+    }
+
+    // Valor en la posicion index (desde 0) de los valores ordenados
+    private int valueAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Posicion " + index + " de " + size + " valores");
+        }
+        int seen = 0;
+        for (int popularity = 0; popularity <= MAX_POPULARITY; popularity++) {
+            seen += counts[popularity];
+            if (seen > index) {
+                return popularity;
+            }
+        }
+        throw new IllegalStateException("Histograma inconsistente");
+    }
+}
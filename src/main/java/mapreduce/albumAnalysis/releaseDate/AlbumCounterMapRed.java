@@ -8,6 +8,7 @@ import java.util.Set;
 
 // Necesario para la deserializacion
 import java.util.List;      
+import java.util.SortedMap;
 import java.io.File;        
 import org.apache.commons.io.FileUtils;
 
@@ -24,18 +25,19 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
-// Codigo generaro para el esquema spotify
-import classes.avro.spotify;
+// Codigo generaro para el esquema SpotifyTrack
+import classes.avro.SpotifyTrack;
+import classes.avro.AlbumKey;
 
 public class AlbumCounterMapRed extends Configured implements Tool 
 {
 
     // Mapper: extrae el año de lanzamiento y el nombre del álbum
     public static class AlbumMapper 
-    extends AvroMapper<spotify, Pair<Integer, CharSequence>> 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, CharSequence>> 
     {
         @Override
-        public void map(spotify track, 
+        public void map(SpotifyTrack track, 
                         AvroCollector<Pair<Integer, CharSequence>> 
                         collector, 
                         Reporter reporter)
@@ -92,6 +94,131 @@ public class AlbumCounterMapRed extends Configured implements Tool
         }
     }
 
+    // Mapper para la entrada serializada con diccionarios: igual que AlbumMapper,
+    // pero se envia el album_id en lugar del nombre del album
+    public static class AlbumIdMapper 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, Integer>> 
+    {
+        @Override
+        public void map(SpotifyTrack track, 
+                        AvroCollector<Pair<Integer, Integer>> 
+                        collector, 
+                        Reporter reporter)
+        throws IOException 
+        {
+            Integer year = track.getYearOfRelease();
+            Integer albumId = track.getAlbumId();
+
+            if (albumId != null) 
+            {
+                // Año cero para los años nulos o con el error del 1
+                collector.collect(new Pair<Integer, Integer>(year == null || year == 1 ? 0 : year, albumId));
+            } 
+        }
+    }
+
+    // Reducer: cuenta los album_id distintos por año, sin crear un String por album
+    public static class AlbumIdReducer 
+    extends AvroReducer<Integer, Integer, Pair<Integer, CharSequence>> 
+    {
+        private final DistinctIds uniqueAlbums = new DistinctIds();
+
+        @Override
+        public void reduce( Integer key, 
+                            Iterable<Integer> values, 
+                            AvroCollector<Pair<Integer, CharSequence>> collector,
+                            Reporter reporter) 
+        throws IOException {
+
+            uniqueAlbums.clear();
+            for (Integer albumId : values) 
+            {
+                uniqueAlbums.add(albumId);
+            }
+            collector.collect(new Pair<Integer, CharSequence>(key, String.valueOf(uniqueAlbums.count())));
+        }
+    }
+
+    // Mapper del modo aproximado: un sketch de los nombres de albumes por año
+    public static class AlbumSketchMapper extends DistinctAlbums.SketchMapper
+    {
+        @Override
+        protected Integer year(SpotifyTrack track)
+        {
+            // Año cero para los años nulos o con el error del 1
+            Integer year = track.getYearOfRelease();
+            return year == null || year == 1 ? 0 : year;
+        }
+
+        @Override
+        protected int slot(SpotifyTrack track)
+        {
+            return 0;
+        }
+    }
+
+    // Reducer del modo aproximado: la estimacion de albumes distintos del año
+    public static class AlbumSketchReducer 
+    extends DistinctAlbums.SketchReducer<Pair<Integer, CharSequence>> 
+    {
+        @Override
+        protected void emit(Integer year, 
+                            SortedMap<Integer, HyperLogLog> slots, 
+                            AvroCollector<Pair<Integer, CharSequence>> collector)
+        throws IOException {
+            collector.collect(new Pair<Integer, CharSequence>(year, String.valueOf(slots.get(0).estimate())));
+        }
+    }
+
+    // Mapper del modo con orden secundario: la clave tiene el año y el nombre del
+    // album, y el valor repite el nombre para compararlo en el reducer
+    public static class AlbumSortMapper 
+    extends AvroMapper<SpotifyTrack, Pair<AlbumKey, CharSequence>> 
+    {
+        @Override
+        public void map(SpotifyTrack track, 
+                        AvroCollector<Pair<AlbumKey, CharSequence>> 
+                        collector, 
+                        Reporter reporter)
+        throws IOException 
+        {
+            Integer year = track.getYearOfRelease();
+            CharSequence albumName = track.getAlbumName();
+
+            if (albumName != null) 
+            {
+                // Año cero para los años nulos o con el error del 1
+                AlbumKey albumKey = new AlbumKey(year == null || year == 1 ? 0 : year, 0, albumName);
+                collector.collect(new Pair<AlbumKey, CharSequence>(albumKey, albumName));
+            } 
+        }
+    }
+
+    // Reducer del modo con orden secundario: los albumes del año llegan ordenados,
+    // asi que se cuentan los distintos comparando cada uno con el anterior
+    public static class AlbumSortReducer 
+    extends AvroReducer<AlbumKey, CharSequence, Pair<Integer, CharSequence>> 
+    {
+        private final DistinctAlbums.SortedAlbums uniqueAlbums = new DistinctAlbums.SortedAlbums();
+
+        @Override
+        public void reduce( AlbumKey key, 
+                            Iterable<CharSequence> values, 
+                            AvroCollector<Pair<Integer, CharSequence>> collector,
+                            Reporter reporter) 
+        throws IOException {
+
+            // La clave es la del primer valor del grupo, solo se usa su año
+            Integer year = key.getYear();
+            uniqueAlbums.clear();
+            for (CharSequence album : values) 
+            {
+                uniqueAlbums.add(album);
+            }
+            collector.collect(new Pair<Integer, CharSequence>(year, String.valueOf(uniqueAlbums.count())));
+        }
+    }
+
 
     // Configura y ejecuta el trabajo de MapReduce.
     // args:  Argumentos de la línea de comandos: [ruta de entrada] [ruta de salida]
@@ -114,17 +241,41 @@ public class AlbumCounterMapRed extends Configured implements Tool
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         // Establecemos los paths de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        // Establecemos el mappper y reducer
-        AvroJob.setMapperClass(conf, AlbumMapper.class);
-        AvroJob.setReducerClass(conf, AlbumReducer.class);
-
         // Especificamos el esquema Avro de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.INT),Schema.create(Type.STRING)));
 
+        // Establecemos el mappper y reducer. En modo aproximado se envian sketches
+        // HyperLogLog y en modo sort los nombres llegan ordenados al reducer; si no,
+        // y la entrada tiene diccionarios, se envian los album_id en lugar de los nombres
+        if (DistinctAlbums.isApproximate(conf))
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "album_name");
+            DistinctAlbums.configure(conf, AlbumSketchMapper.class, AlbumSketchReducer.class);
+        }
+        else if (DistinctAlbums.isSorted(conf))
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "album_name");
+            DistinctAlbums.configureSorted(conf, AlbumSortMapper.class, AlbumSortReducer.class, 
+                                           Schema.create(Type.STRING));
+        }
+        else if (SpotifyInputFormat.hasDictionaries(conf))
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "album_id");
+            AvroJob.setMapperClass(conf, AlbumIdMapper.class);
+            AvroJob.setReducerClass(conf, AlbumIdReducer.class);
+            AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), Schema.create(Type.INT)));
+        }
+        else
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "album_name");
+            AvroJob.setMapperClass(conf, AlbumMapper.class);
+            AvroJob.setReducerClass(conf, AlbumReducer.class);
+        }
+
         // Ejecuta el trabajo de MapReduce
         JobClient.runJob(conf);
         return 0;
@@ -147,7 +298,12 @@ public class AlbumCounterMapRed extends Configured implements Tool
             System.out.println("Trabajo terminado con éxito");
 
             // Comienzo del proceso de deserialización
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida. En el
+            // modo hll los resultados empiezan con el error de las estimaciones
+            GenericOptionsParser parser = new GenericOptionsParser(args);
+            String[] paths = parser.getRemainingArgs();
+            String errorLine = DistinctAlbums.errorLine(parser.getConfiguration());
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
 
             for (File outputFile : outputFiles) 
@@ -157,7 +313,10 @@ public class AlbumCounterMapRed extends Configured implements Tool
                     String textName = outputFile.getName().replace(".avro", ".txt");
 
                     List<String> records = DeserializationData.getRecords(outputFile.getAbsolutePath(), "int", "string");
-                    
+                    // En el modo hll agregamos el error de las estimaciones al principio
+                    if (errorLine != null) {
+                        records.add(0, errorLine);
+                    }
                     File textFile = new File(outputFile.getParent(), textName);
 
                     FileUtils.writeLines(textFile, records);
@@ -8,6 +8,8 @@ import java.util.Set;
 
 // Necesario para la deserializacion
 import java.util.List;      
+import java.util.Arrays;
+import java.util.SortedMap;
 import java.io.File;        
 import org.apache.commons.io.FileUtils;
 
@@ -24,19 +26,20 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
-// Esquema spotify para la entrada
-import classes.avro.spotify;
+// Esquema SpotifyTrack para la entrada
+import classes.avro.SpotifyTrack;
 import classes.avro.DayValue;
+import classes.avro.AlbumKey;
 
 public class AlbumsPerDay extends Configured implements Tool 
 {
 
     // Mapper: extrae el año, día de lanzamiento y el nombre del álbum
     public static class AlbumsPerDayMapper 
-    extends AvroMapper<spotify, Pair<Integer, DayValue>> 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, DayValue>> 
     {
         @Override
-        public void map(spotify track, 
+        public void map(SpotifyTrack track, 
                         AvroCollector<Pair<Integer, DayValue>> 
                         collector, 
                         Reporter reporter)
@@ -99,6 +102,162 @@ public class AlbumsPerDay extends Configured implements Tool
         }
     }
 
+    // Mapper para la entrada serializada con diccionarios: en lugar de un DayValue
+    // con el nombre del album se envia un long con el dia en los 32 bits altos y
+    // el album_id en los bajos
+    public static class AlbumIdsPerDayMapper 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, Long>> 
+    {
+        @Override
+        public void map(SpotifyTrack track, 
+                        AvroCollector<Pair<Integer, Long>> 
+                        collector, 
+                        Reporter reporter)
+        throws IOException 
+        {
+            Integer year = track.getYearOfRelease();
+            Integer day = track.getDayOfRelease();
+            Integer albumId = track.getAlbumId();
+
+            if (albumId != null && day != null) 
+            {
+                long dayAlbum = (long) day << 32 | albumId;
+                collector.collect(new Pair<Integer, Long>(year == null || year == 1 ? 0 : year, dayAlbum));
+            } 
+        }
+    }
+
+    // Reducer: cuenta los album_id distintos de cada dia
+    public static class AlbumIdsPerDayReducer 
+    extends AvroReducer<Integer, Long, Pair<Integer, DayValue>> 
+    {
+        private final DistinctIds[] uniqueAlbumsPerDay = new DistinctIds[31];
+
+        @Override
+        public void reduce( Integer key, 
+                            Iterable<Long> values, 
+                            AvroCollector<Pair<Integer, DayValue>> collector,
+                            Reporter reporter) 
+        throws IOException {
+
+            for (int i = 0; i < uniqueAlbumsPerDay.length; i++) {
+                if (uniqueAlbumsPerDay[i] == null) {
+                    uniqueAlbumsPerDay[i] = new DistinctIds();
+                }
+                uniqueAlbumsPerDay[i].clear();
+            }
+
+            for (Long dayAlbum : values) 
+            {
+                int day = (int) (dayAlbum >>> 32);
+                uniqueAlbumsPerDay[day - 1].add((int) (long) dayAlbum);
+            }
+
+            for (int i = 0; i < uniqueAlbumsPerDay.length; i++) {
+                DayValue dayValue = new DayValue(i + 1, String.valueOf(uniqueAlbumsPerDay[i].count()));
+                collector.collect(new Pair<>( key , dayValue));
+            }
+        }
+    }
+
+    // Mapper del modo aproximado: un sketch de los nombres de albumes por año y dia
+    public static class AlbumSketchPerDayMapper extends DistinctAlbums.SketchMapper
+    {
+        @Override
+        protected Integer year(SpotifyTrack track)
+        {
+            Integer year = track.getYearOfRelease();
+            return year == null || year == 1 ? 0 : year;
+        }
+
+        @Override
+        protected int slot(SpotifyTrack track)
+        {
+            Integer day = track.getDayOfRelease();
+            return day == null ? -1 : day;
+        }
+    }
+
+    // Reducer del modo aproximado: la estimacion de albumes distintos de cada dia
+    public static class AlbumSketchPerDayReducer 
+    extends DistinctAlbums.SketchReducer<Pair<Integer, DayValue>> 
+    {
+        @Override
+        protected void emit(Integer year, 
+                            SortedMap<Integer, HyperLogLog> slots, 
+                            AvroCollector<Pair<Integer, DayValue>> collector)
+        throws IOException {
+            for (int day = 1; day <= 31; day++) {
+                HyperLogLog sketch = slots.get(day);
+                DayValue dayValue = new DayValue(day, String.valueOf(sketch == null ? 0 : sketch.estimate()));
+                collector.collect(new Pair<>( year , dayValue));
+            }
+        }
+    }
+
+    // Mapper del modo con orden secundario: la clave tiene el año, el dia y el
+    // nombre del album, y el valor repite el dia y el nombre para el reducer
+    public static class AlbumsPerDaySortMapper 
+    extends AvroMapper<SpotifyTrack, Pair<AlbumKey, DayValue>> 
+    {
+        @Override
+        public void map(SpotifyTrack track, 
+                        AvroCollector<Pair<AlbumKey, DayValue>> 
+                        collector, 
+                        Reporter reporter)
+        throws IOException 
+        {
+            Integer year = track.getYearOfRelease();
+            Integer day = track.getDayOfRelease();
+            CharSequence albumName = track.getAlbumName();
+
+            if (albumName != null && day != null) 
+            {
+                AlbumKey albumKey = new AlbumKey(year == null || year == 1 ? 0 : year, day, albumName);
+                collector.collect(new Pair<AlbumKey, DayValue>(albumKey, new DayValue(day, albumName)));
+            } 
+        }
+    }
+
+    // Reducer del modo con orden secundario: los albumes del año llegan ordenados
+    // por dia y nombre, asi que se cuentan los distintos de cada dia comparando
+    // cada album con el anterior
+    public static class AlbumsPerDaySortReducer 
+    extends AvroReducer<AlbumKey, DayValue, Pair<Integer, DayValue>> 
+    {
+        private final DistinctAlbums.SortedAlbums uniqueAlbums = new DistinctAlbums.SortedAlbums();
+        private final int[] albumsPerDay = new int[31];
+
+        @Override
+        public void reduce( AlbumKey key, 
+                            Iterable<DayValue> values, 
+                            AvroCollector<Pair<Integer, DayValue>> collector,
+                            Reporter reporter) 
+        throws IOException {
+
+            // La clave es la del primer valor del grupo, solo se usa su año
+            Integer year = key.getYear();
+            Arrays.fill(albumsPerDay, 0);
+            int currentDay = 0;
+            for (DayValue dayValue : values) 
+            {
+                int day = dayValue.getDay();
+                if (day != currentDay)
+                {
+                    currentDay = day;
+                    uniqueAlbums.clear();
+                }
+                uniqueAlbums.add(dayValue.getAlbums());
+                albumsPerDay[day - 1] = uniqueAlbums.count();
+            }
+
+            for (int i = 0; i < albumsPerDay.length; i++) {
+                DayValue dayValue = new DayValue(i + 1, String.valueOf(albumsPerDay[i]));
+                collector.collect(new Pair<>( year , dayValue));
+            }
+        }
+    }
+
 
     // Configura y ejecuta el trabajo de MapReduce.
     // args:  Argumentos de la línea de comandos: [ruta de entrada] [ruta de salida]
@@ -121,17 +280,41 @@ public class AlbumsPerDay extends Configured implements Tool
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         // Establecemos los paths de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        // Establecemos el mappper y reducer
-        AvroJob.setMapperClass(conf, AlbumsPerDayMapper.class);
-        AvroJob.setReducerClass(conf, AlbumsPerDayReducer.class);
-
         // Especificamos el esquema Avro de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.INT),DayValue.getClassSchema()));
 
+        // Establecemos el mappper y reducer. En modo aproximado se envian sketches
+        // HyperLogLog y en modo sort los nombres llegan ordenados al reducer; si no,
+        // y la entrada tiene diccionarios, se envian los album_id en lugar de los nombres
+        if (DistinctAlbums.isApproximate(conf))
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "day_of_release", "album_name");
+            DistinctAlbums.configure(conf, AlbumSketchPerDayMapper.class, AlbumSketchPerDayReducer.class);
+        }
+        else if (DistinctAlbums.isSorted(conf))
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "day_of_release", "album_name");
+            DistinctAlbums.configureSorted(conf, AlbumsPerDaySortMapper.class, AlbumsPerDaySortReducer.class, 
+                                           DayValue.getClassSchema());
+        }
+        else if (SpotifyInputFormat.hasDictionaries(conf))
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "day_of_release", "album_id");
+            AvroJob.setMapperClass(conf, AlbumIdsPerDayMapper.class);
+            AvroJob.setReducerClass(conf, AlbumIdsPerDayReducer.class);
+            AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), Schema.create(Type.LONG)));
+        }
+        else
+        {
+            SpotifyInputFormat.setColumns(conf, "year_of_release", "day_of_release", "album_name");
+            AvroJob.setMapperClass(conf, AlbumsPerDayMapper.class);
+            AvroJob.setReducerClass(conf, AlbumsPerDayReducer.class);
+        }
+
         // Ejecuta el trabajo de MapReduce
         JobClient.runJob(conf);
         return 0;
@@ -154,7 +337,12 @@ public class AlbumsPerDay extends Configured implements Tool
             System.out.println("Trabajo terminado con éxito");
 
             // Comienzo del proceso de deserialización
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida. En el
+            // modo hll los resultados empiezan con el error de las estimaciones
+            GenericOptionsParser parser = new GenericOptionsParser(args);
+            String[] paths = parser.getRemainingArgs();
+            String errorLine = DistinctAlbums.errorLine(parser.getConfiguration());
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
 
             for (File outputFile : outputFiles) 
@@ -164,7 +352,10 @@ public class AlbumsPerDay extends Configured implements Tool
                     String textName = outputFile.getName().replace(".avro", ".txt");
 
                     List<String> records = DeserializationData.getPairIntDayValueRecords(outputFile.getAbsolutePath());
-                    
+                    // En el modo hll agregamos el error de las estimaciones al principio
+                    if (errorLine != null) {
+                        records.add(0, errorLine);
+                    }
                     File textFile = new File(outputFile.getParent(), textName);
 
                     FileUtils.writeLines(textFile, records);
@@ -186,7 +186,9 @@ public class AlbumsPerDaySummary extends Configured implements Tool {
 
         if (res == 0) {
             // Accedemos al directorio donde se encuentra el output del MapReduce
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             // Enlistamos los archivos de este directorio
             File[] outputFiles = outputDir.listFiles();
 
@@ -19,7 +19,7 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
 // Esquemas usados
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
 import classes.avro.MonthValue;
 
 
@@ -32,11 +32,11 @@ public class AlbumsPerMonth extends Configured implements Tool {
     //          - La salida del mapper es un par (Año, MonthValue), donde MonthValue 
     //          contiene el mes y el nombre del álbum.
     public static class AlbumsPerMonthMapper 
-    extends AvroMapper<spotify, Pair<Integer, MonthValue>> 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, MonthValue>> 
     {
 
         @Override
-        public void map(spotify track, 
+        public void map(SpotifyTrack track, 
                         AvroCollector<Pair<Integer, MonthValue>> collector, 
                         Reporter reporter)
         throws IOException {
@@ -129,14 +129,15 @@ public class AlbumsPerMonth extends Configured implements Tool {
         Path outputPath = new Path(args[1]);
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
         AvroJob.setMapperClass(conf, AlbumsPerMonthMapper.class);
         AvroJob.setReducerClass(conf, AlbumsPerMonthReducer.class);
 
         // Esquemas a usar de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "month_of_release", "album_name");
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.INT), MonthValue.getClassSchema()));
 
 
@@ -155,7 +156,9 @@ public class AlbumsPerMonth extends Configured implements Tool {
         if (res == 0) 
         {
             // Accedemos al directorio donde se encuentra el output del MapReduce
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             // Enlistamos los archivos de este directorio
             File[] outputFiles = outputDir.listFiles();
 
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.avro.*;
@@ -24,7 +25,8 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
 // Esquemas usados
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
+import classes.avro.Weekday;
 import classes.avro.WeeklyAlbumReleases;
 import classes.avro.DayAlbumData;
 
@@ -39,11 +41,11 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
     //            donde WeeklyAlbumReleases contiene una lista de DayAlbumData
     //            con el día de la semana y el nombre del álbum.
     public static class AlbumsPerWeekdayPerYearMapper 
-    extends AvroMapper<spotify, Pair<Integer, WeeklyAlbumReleases>> 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, WeeklyAlbumReleases>> 
     {
 
         @Override
-        public void map(spotify track, 
+        public void map(SpotifyTrack track, 
                         AvroCollector<Pair<Integer, WeeklyAlbumReleases>> collector, 
                         Reporter reporter)
         throws IOException 
@@ -51,7 +53,7 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
 
             // Accedemos al año, día de la semana y nombre del álbum
             Integer year = track.getYearOfRelease();
-            CharSequence weekday = track.getWeekdayOfRelease();
+            Weekday weekday = track.getWeekdayOfRelease();
             CharSequence albumName = track.getAlbumName();
 
             Schema stringSchema = Schema.create(Schema.Type.STRING);
@@ -63,7 +65,7 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
                 GenericArray<CharSequence> albumList = new GenericData.Array<>(0, arrayStringSchema);
                 albumList.add(albumName);
 
-                DayAlbumData dayAlbumData = new DayAlbumData(weekday, 1, albumList);
+                DayAlbumData dayAlbumData = new DayAlbumData(weekday.toString(), 1, albumList);
 
                 GenericArray<DayAlbumData> dayAlbumDataArray = new GenericData.Array<>(0, arrayDADSchema);
                 dayAlbumDataArray.add(dayAlbumData);
@@ -149,6 +151,48 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
         }
     }
 
+    // Mapper del modo aproximado: un sketch de los nombres de albumes por año y dia de la semana
+    public static class AlbumsPerWeekdaySketchMapper extends DistinctAlbums.SketchMapper
+    {
+        @Override
+        protected Integer year(SpotifyTrack track)
+        {
+            return track.getYearOfRelease();
+        }
+
+        @Override
+        protected int slot(SpotifyTrack track)
+        {
+            Weekday weekday = track.getWeekdayOfRelease();
+            return weekday == null ? -1 : weekday.ordinal();
+        }
+    }
+
+    // Reducer del modo aproximado: la estimacion de albumes distintos de cada dia
+    // de la semana. La lista de albumes de cada dia queda vacia
+    public static class AlbumsPerWeekdaySketchReducer 
+        extends DistinctAlbums.SketchReducer<Pair<Integer, WeeklyAlbumReleases>> 
+    {
+        @Override
+        protected void emit(Integer year, 
+                            SortedMap<Integer, HyperLogLog> slots, 
+                            AvroCollector<Pair<Integer, WeeklyAlbumReleases>> collector)
+        throws IOException 
+        {
+            Schema arrayStringSchema = Schema.createArray(Schema.create(Schema.Type.STRING));
+            Schema arrayDADSchema = Schema.createArray(DayAlbumData.getClassSchema());
+
+            GenericArray<DayAlbumData> dayAlbumDataArray = new GenericData.Array<>(0, arrayDADSchema);
+            for (Map.Entry<Integer, HyperLogLog> slot : slots.entrySet()) 
+            {
+                dayAlbumDataArray.add(new DayAlbumData(Weekday.values()[slot.getKey()].toString(),
+                                                       (int) slot.getValue().estimate(),
+                                                       new GenericData.Array<CharSequence>(0, arrayStringSchema)));
+            }
+            collector.collect(new Pair<Integer, WeeklyAlbumReleases>(year, new WeeklyAlbumReleases(dayAlbumDataArray)));
+        }
+    }
+
     public int run(String[] args) throws Exception 
     {
 
@@ -164,14 +208,19 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
         Path outputPath = new Path(args[1]);
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        AvroJob.setMapperClass(conf, AlbumsPerWeekdayPerYearMapper.class);
-        AvroJob.setReducerClass(conf, AlbumsPerWeekdayPerYearReducer.class);
+        // En modo aproximado se envian sketches HyperLogLog en lugar de los nombres
+        if (DistinctAlbums.isApproximate(conf)) {
+            DistinctAlbums.configure(conf, AlbumsPerWeekdaySketchMapper.class, AlbumsPerWeekdaySketchReducer.class);
+        } else {
+            AvroJob.setMapperClass(conf, AlbumsPerWeekdayPerYearMapper.class);
+            AvroJob.setReducerClass(conf, AlbumsPerWeekdayPerYearReducer.class);
+        }
 
-        Schema inputSchema = spotify.getClassSchema();
-        AvroJob.setInputSchema(conf, inputSchema);
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "weekday_of_release", "album_name");
 
         Schema intSchema = Schema.create(Type.INT);
         Schema WARSchema = WeeklyAlbumReleases.getClassSchema();
@@ -191,7 +240,12 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
 
         if (res == 0) {
             // Accedemos al directorio donde se encuentra el output del MapReduce
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida. En el
+            // modo hll los resultados empiezan con el error de las estimaciones
+            GenericOptionsParser parser = new GenericOptionsParser(args);
+            String[] paths = parser.getRemainingArgs();
+            String errorLine = DistinctAlbums.errorLine(parser.getConfiguration());
+            File outputDir = new File(paths[1]);
             // Enlistamos los archivos de este directorio
             File[] outputFiles = outputDir.listFiles();
 
@@ -205,7 +259,11 @@ public class AlbumsPerWeekdayPerYear extends Configured implements Tool {
                     String textName = outputFile.getName().replace(".avro", ".txt");
                     // Llamamos a la funcion espeficia para deserializar el esquema usado
                     List<String> records = DeserializationData.getPairIntWARRecords(outputFile.getAbsolutePath());
-                    // Creamos el archivo con los registros obtenidos 
+                    // En el modo hll agregamos el error de las estimaciones al principio
+                    if (errorLine != null) {
+                        records.add(0, errorLine);
+                    }
+                    // Creamos el archivo con los registros obtenidos
                     File textFile = new File(outputFile.getParent(), textName);
                     FileUtils.writeLines(textFile, records);
                 }
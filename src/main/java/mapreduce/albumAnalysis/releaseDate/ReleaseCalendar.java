@@ -0,0 +1,412 @@
+package mapreduce;
+
+import java.io.IOException;
+
+// Necesario para contar de forma unica los albumes
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Necesario para la deserializacion
+import java.util.List;
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+
+// Necesario para el acceso a AvroMapper, AvroReducer, AvroMultipleOutputs y
+// funciones para obtener esquemas de avro
+import org.apache.avro.Schema.Type;
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.mapred.*;
+import org.apache.avro.*;
+
+// Necesario para la configuraciones del job
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+// Esquemas usados
+import classes.avro.SpotifyTrack;
+import classes.avro.AlbumKey;
+import classes.avro.AlbumRelease;
+import classes.avro.AlbumType;
+import classes.avro.DayAlbumData;
+import classes.avro.DayValue;
+import classes.avro.MonthValue;
+import classes.avro.TypeValue;
+import classes.avro.Weekday;
+import classes.avro.WeeklyAlbumReleases;
+
+// MapReduce que lee los datos una sola vez y escribe lo mismo que
+// AlbumCounterMapRed, AlbumsPerDay, AlbumsPerMonth, AlbumsPerWeekdayPerYear y
+// AlbumTypes (en su modo exacto), cada uno con su esquema de salida. La cantidad
+// de albumes por año es la salida del trabajo y las demas van cada una en su
+// propio directorio dentro de la salida: days, months, weekdays y types.
+// Cuenta siempre como el modo sort de DistinctAlbums: por cada fila el mapper
+// envia una clave AlbumKey (año, casilla y album) por cada casilla que tiene la
+// fila (el total, su dia, su mes, su dia de la semana y el tipo), y el reducer
+// recibe los albumes del año ordenados por casilla y nombre, asi que solo guarda
+// el ultimo nombre. Por eso no usa spotify.albums.distinct (el modo hll daria un
+// resultado aproximado que aqui no se necesita) ni los ids de los diccionarios:
+// con diccionarios, SpotifyInputFormat llena album_name y el resultado es el mismo.
+// La excepcion son las listas de albumes de la salida weekdays, que forman parte
+// del resultado y se guardan hasta escribir el año
+public class ReleaseCalendar extends Configured implements Tool
+{
+
+    // Salidas con nombre del trabajo y el esquema de cada una
+    public static final Map<String, Schema> OUTPUTS = new LinkedHashMap<>();
+
+    // Contadores de Hadoop para los dias y meses fuera de rango, que no se cuentan
+    public enum Counter { INVALID_DAY, INVALID_MONTH }
+
+    // Casillas de la clave dentro del año. Los albumes de cada casilla llegan
+    // juntos y en orden, primero el total, luego los dias, los meses, los dias de
+    // la semana y al final los tipos
+    static final int TOTAL_SLOT = 0;
+    static final int DAY_SLOT = 100;
+    static final int MONTH_SLOT = 200;
+    static final int WEEKDAY_SLOT = 300;
+    static final int TYPE_SLOT = 400;
+
+    private static final Weekday[] WEEKDAYS = Weekday.values();
+
+    static
+    {
+        Schema intSchema = Schema.create(Type.INT);
+        OUTPUTS.put("days", Pair.getPairSchema(intSchema, DayValue.getClassSchema()));
+        OUTPUTS.put("months", Pair.getPairSchema(intSchema, MonthValue.getClassSchema()));
+        OUTPUTS.put("weekdays", Pair.getPairSchema(intSchema, WeeklyAlbumReleases.getClassSchema()));
+        OUTPUTS.put("types", Pair.getPairSchema(intSchema, TypeValue.getClassSchema()));
+    }
+
+    // Casilla de un valor del mapper. Cada valor solo tiene el campo de su casilla
+    // (ninguno para el total). Todos los tipos van en la misma casilla, asi que,
+    // como en AlbumTypes, cada album cuenta una sola vez, en el primer tipo que llega
+    static int slot(AlbumRelease release)
+    {
+        if (release.getDay() != null)
+        {
+            return DAY_SLOT + release.getDay();
+        }
+        if (release.getMonth() != null)
+        {
+            return MONTH_SLOT + release.getMonth();
+        }
+        if (release.getWeekday() != null)
+        {
+            return WEEKDAY_SLOT + Weekday.valueOf(release.getWeekday().toString()).ordinal();
+        }
+        return release.getType() != null ? TYPE_SLOT : TOTAL_SLOT;
+    }
+
+    // Mapper: por cada fila envia el album en la casilla del total y en las de su
+    // dia, mes, dia de la semana y tipo, si la fila los tiene
+    public static class ReleaseCalendarMapper
+    extends AvroMapper<SpotifyTrack, Pair<AlbumKey, AlbumRelease>>
+    {
+        @Override
+        public void map(SpotifyTrack track,
+                        AvroCollector<Pair<AlbumKey, AlbumRelease>> collector,
+                        Reporter reporter)
+        throws IOException
+        {
+            Integer year = track.getYearOfRelease();
+            CharSequence albumName = track.getAlbumName();
+
+            if (albumName == null)
+            {
+                return;
+            }
+
+            // Como en los trabajos por separado, el año null o 1 se cuenta con la
+            // clave especial 0
+            int key = year == null || year == 1 ? 0 : year;
+            collect(collector, key, new AlbumRelease(albumName, null, null, null, null));
+
+            // Los dias y meses fuera de rango se descartan en lugar de detener el trabajo
+            Integer day = track.getDayOfRelease();
+            if (day != null && (day < 1 || day > 31))
+            {
+                reporter.incrCounter(Counter.INVALID_DAY, 1);
+            }
+            else if (day != null)
+            {
+                collect(collector, key, new AlbumRelease(albumName, day, null, null, null));
+            }
+
+            Integer month = track.getMonthOfRelease();
+            if (month != null && (month < 1 || month > 12))
+            {
+                reporter.incrCounter(Counter.INVALID_MONTH, 1);
+            }
+            else if (month != null)
+            {
+                collect(collector, key, new AlbumRelease(albumName, null, month, null, null));
+            }
+
+            // AlbumsPerWeekdayPerYear no cuenta las filas sin año, asi que en esas
+            // filas no se envia el dia de la semana
+            Weekday weekday = track.getWeekdayOfRelease();
+            if (year != null && weekday != null)
+            {
+                collect(collector, key, new AlbumRelease(albumName, null, null, weekday.toString(), null));
+            }
+
+            AlbumType albumType = track.getAlbumType();
+            if (albumType != null)
+            {
+                collect(collector, key, new AlbumRelease(albumName, null, null, null, albumType.toString()));
+            }
+        }
+
+        private static void collect(AvroCollector<Pair<AlbumKey, AlbumRelease>> collector, int year,
+                                    AlbumRelease release)
+        throws IOException
+        {
+            AlbumKey albumKey = new AlbumKey(year, slot(release), release.getAlbum());
+            collector.collect(new Pair<AlbumKey, AlbumRelease>(albumKey, release));
+        }
+    }
+
+    // Reducer: recibe los albumes del año ordenados por casilla y nombre y cuenta
+    // los distintos de cada casilla comparando cada uno con el anterior. Escribe
+    // el total en la salida del trabajo y el resto en cada salida con nombre. Las
+    // salidas con nombre solo tienen registros del año si alguna fila tenia esa casilla
+    public static class ReleaseCalendarReducer
+    extends AvroReducer<AlbumKey, AlbumRelease, Pair<Integer, CharSequence>>
+    {
+        private static final Schema ARRAY_STRING_SCHEMA = Schema.createArray(Schema.create(Schema.Type.STRING));
+        private static final Schema ARRAY_DAD_SCHEMA = Schema.createArray(DayAlbumData.getClassSchema());
+
+        private final DistinctAlbums.SortedAlbums uniqueAlbums = new DistinctAlbums.SortedAlbums();
+        private final int[] albumsPerDay = new int[31];
+        private final int[] albumsPerMonth = new int[12];
+        private AvroMultipleOutputs outputs;
+
+        @Override
+        public void configure(JobConf job)
+        {
+            outputs = new AvroMultipleOutputs(job);
+        }
+
+        @Override
+        public void reduce( AlbumKey key,
+                            Iterable<AlbumRelease> values,
+                            AvroCollector<Pair<Integer, CharSequence>> collector,
+                            Reporter reporter)
+        throws IOException
+        {
+            // La clave es la del primer valor del grupo, solo se usa su año
+            int year = key.getYear();
+            int totalAlbums = 0;
+            Arrays.fill(albumsPerDay, 0);
+            Arrays.fill(albumsPerMonth, 0);
+            boolean hasDay = false;
+            boolean hasMonth = false;
+            // Los dias de la semana llegan en orden y cada uno se agrega al llegar
+            GenericArray<DayAlbumData> dayAlbumDataArray = new GenericData.Array<>(0, ARRAY_DAD_SCHEMA);
+            DayAlbumData weekdayAlbums = null;
+            Map<CharSequence, Integer> typeCounter = new LinkedHashMap<>();
+
+            int previousSlot = -1;
+            for (AlbumRelease release : values)
+            {
+                int slot = slot(release);
+                if (slot != previousSlot)
+                {
+                    uniqueAlbums.clear();
+                    previousSlot = slot;
+                    if (slot >= WEEKDAY_SLOT && slot < TYPE_SLOT)
+                    {
+                        weekdayAlbums = new DayAlbumData(WEEKDAYS[slot - WEEKDAY_SLOT].toString(), 0,
+                                                         new GenericData.Array<>(0, ARRAY_STRING_SCHEMA));
+                        dayAlbumDataArray.add(weekdayAlbums);
+                    }
+                }
+                if (!uniqueAlbums.add(release.getAlbum()))
+                {
+                    continue;
+                }
+
+                if (slot == TOTAL_SLOT)
+                {
+                    totalAlbums++;
+                }
+                else if (slot < MONTH_SLOT)
+                {
+                    hasDay = true;
+                    albumsPerDay[slot - DAY_SLOT - 1]++;
+                }
+                else if (slot < WEEKDAY_SLOT)
+                {
+                    hasMonth = true;
+                    albumsPerMonth[slot - MONTH_SLOT - 1]++;
+                }
+                else if (slot < TYPE_SLOT)
+                {
+                    weekdayAlbums.getAlbumList().add(release.getAlbum().toString());
+                    weekdayAlbums.setAlbumCount(weekdayAlbums.getAlbumCount() + 1);
+                }
+                else
+                {
+                    typeCounter.merge(release.getType().toString(), 1, Integer::sum);
+                }
+            }
+
+            collector.collect(new Pair<Integer, CharSequence>(year, String.valueOf(totalAlbums)));
+
+            if (hasDay)
+            {
+                for (int i = 0; i < albumsPerDay.length; i++)
+                {
+                    write("days", reporter, new Pair<Integer, DayValue>(year, new DayValue(i + 1, String.valueOf(albumsPerDay[i]))));
+                }
+            }
+
+            if (hasMonth)
+            {
+                for (int i = 0; i < albumsPerMonth.length; i++)
+                {
+                    write("months", reporter, new Pair<Integer, MonthValue>(year, new MonthValue(i + 1, String.valueOf(albumsPerMonth[i]))));
+                }
+            }
+
+            // Las filas con dia de la semana y clave 0 son las del año 1, que
+            // AlbumsPerWeekdayPerYear escribe con su propio año
+            if (!dayAlbumDataArray.isEmpty())
+            {
+                write("weekdays", reporter, new Pair<Integer, WeeklyAlbumReleases>(year == 0 ? 1 : year,
+                                                                           new WeeklyAlbumReleases(dayAlbumDataArray)));
+            }
+
+            for (Map.Entry<CharSequence, Integer> type : typeCounter.entrySet())
+            {
+                write("types", reporter, new Pair<Integer, TypeValue>(year,
+                                                      new TypeValue(type.getKey(), type.getValue().toString())));
+            }
+        }
+
+        // Escribe el registro en los archivos part-r-NNNNN.avro del directorio
+        // de la salida, que AlbumsPerDaySummary y AlbumsPerMonthSummary pueden leer
+        private void write(String output, Reporter reporter, Object datum) throws IOException
+        {
+            outputs.collect(output, reporter, OUTPUTS.get(output), datum, output + "/part");
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            outputs.close();
+        }
+    }
+
+    // Configura y ejecuta el trabajo de MapReduce.
+    // args:  Argumentos de la línea de comandos: [ruta de entrada] [ruta de salida]
+    // retorna  0 si el trabajo se completa con éxito, un valor distinto de cero si falla
+    public int run(String[] args) throws Exception
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Uso: ReleaseCalendar <input path> <output path>");
+            return -1;
+        }
+
+        JobConf conf = new JobConf(getConf(), ReleaseCalendar.class);
+        conf.setJobName("Contar los albums publicados por año, dia, mes, dia de la semana y tipo");
+
+        Path outputPath = new Path(args[1]);
+        outputPath.getFileSystem(conf).delete(outputPath, true);
+
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
+        FileOutputFormat.setOutputPath(conf, new Path(args[1]));
+
+        // Las claves se agrupan por año y el combiner deja un solo valor por cada
+        // album repetido en la misma casilla del mapper
+        DistinctAlbums.configureSorted(conf, ReleaseCalendarMapper.class, ReleaseCalendarReducer.class,
+                                       AlbumRelease.getClassSchema());
+
+        // Esquemas a usar de entrada y salida. La salida del trabajo es la de
+        // AlbumCounterMapRed y las demas son salidas con nombre
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "month_of_release", "day_of_release",
+                                      "weekday_of_release", "album_type", "album_name");
+        for (Map.Entry<String, Schema> output : OUTPUTS.entrySet())
+        {
+            AvroMultipleOutputs.addNamedOutput(conf, output.getKey(), AvroOutputFormat.class, output.getValue());
+        }
+        AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), Schema.create(Type.STRING)));
+
+        RunningJob job = JobClient.runJob(conf);
+        ShuffleReport.print(job);
+        return 0;
+    }
+
+    // Deserializa un archivo .avro de la salida con la funcion del trabajo por
+    // separado. output es null para la salida del trabajo
+    private static List<String> getRecords(String output, String avroFilePath)
+    {
+        if (output == null)
+        {
+            return DeserializationData.getRecords(avroFilePath, "int", "string");
+        }
+        switch (output)
+        {
+            case "days":
+                return DeserializationData.getPairIntDayValueRecords(avroFilePath);
+            case "months":
+                return DeserializationData.getPairIntAlbumValueRecords(avroFilePath);
+            case "weekdays":
+                return DeserializationData.getPairIntWARRecords(avroFilePath);
+            default:
+                return DeserializationData.getPairIntTypeValueRecords(avroFilePath);
+        }
+    }
+
+    // Crea un .txt por cada archivo .avro del directorio
+    private static void writeText(File outputDir, String output) throws IOException
+    {
+        File[] outputFiles = outputDir.listFiles();
+        if (outputFiles == null)
+        {
+            return;
+        }
+
+        for (File outputFile : outputFiles)
+        {
+            // Nos interesa el archivo .avro con nuestros datos serializados
+            if (outputFile.getName().endsWith(".avro"))
+            {
+                String textName = outputFile.getName().replace(".avro", ".txt");
+                List<String> records = getRecords(output, outputFile.getAbsolutePath());
+                File textFile = new File(outputFile.getParent(), textName);
+                FileUtils.writeLines(textFile, records);
+            }
+        }
+    }
+
+    // Main para iniciar el trabajo de MapReduce.
+    public static void main(String[] args) throws Exception
+    {
+        int res = ToolRunner.run(new Configuration(), new ReleaseCalendar(), args);
+
+        if (res == 0)
+        {
+            // Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
+            // Las salidas con nombre estan en su propio directorio dentro de la salida del trabajo
+            writeText(outputDir, null);
+            for (String output : OUTPUTS.keySet())
+            {
+                writeText(new File(outputDir, output), output);
+            }
+            System.out.println("Trabajo terminado con éxito");
+        } else
+        {
+            System.out.println("Trabajo falló");
+        }
+        System.exit(res);
+    }
+}
@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.HashMap;   
 import java.util.Map;   
 import java.util.Set;       
+import java.util.SortedMap;
 
 // Necesario para la deserializacion
 import java.util.List;      
@@ -27,18 +28,20 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
 // Esquema usados
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
+import classes.avro.AlbumType;
 import classes.avro.TypeValue;
+import classes.avro.AlbumKey;
 
 public class AlbumTypes extends Configured implements Tool 
 {
 
     // Mapper: extrae el año de lanzamiento, el nombre y tipo del álbum
     public static class AlbumTypesMapper 
-    extends AvroMapper<spotify, Pair<Integer, TypeValue>> 
+    extends AvroMapper<SpotifyTrack, Pair<Integer, TypeValue>> 
     {
         @Override
-        public void map(spotify track, 
+        public void map(SpotifyTrack track, 
                         AvroCollector<Pair<Integer, TypeValue>> 
                         collector, 
                         Reporter reporter)
@@ -47,7 +50,7 @@ public class AlbumTypes extends Configured implements Tool
             // Obtenemos el nombre del album, su tipo y su año de lanzamiento
             Integer year = track.getYearOfRelease();
             CharSequence albumName = track.getAlbumName();
-            CharSequence albumType = track.getAlbumType();
+            AlbumType albumType = track.getAlbumType();
 
             // Si el nombre, el tipo  el año son distintos a nulo, 
             // agregamos el par con su información
@@ -107,6 +110,102 @@ public class AlbumTypes extends Configured implements Tool
         }
     }
 
+    // Mapper del modo aproximado: un sketch de los nombres de albumes por año y tipo
+    public static class AlbumTypesSketchMapper extends DistinctAlbums.SketchMapper
+    {
+        @Override
+        protected Integer year(SpotifyTrack track)
+        {
+            Integer year = track.getYearOfRelease();
+            return year == null || year == 1 ? 0 : year;
+        }
+
+        @Override
+        protected int slot(SpotifyTrack track)
+        {
+            AlbumType albumType = track.getAlbumType();
+            return albumType == null ? -1 : albumType.ordinal();
+        }
+    }
+
+    // Reducer del modo aproximado: la estimacion de albumes distintos de cada tipo.
+    // A diferencia del modo exacto, un album que aparece con dos tipos cuenta en los dos
+    public static class AlbumTypesSketchReducer 
+    extends DistinctAlbums.SketchReducer<Pair<Integer, TypeValue>> 
+    {
+        @Override
+        protected void emit(Integer year, 
+                            SortedMap<Integer, HyperLogLog> slots, 
+                            AvroCollector<Pair<Integer, TypeValue>> collector)
+        throws IOException {
+            for (Map.Entry<Integer, HyperLogLog> slot : slots.entrySet())
+            {
+                TypeValue typeValue = new TypeValue(AlbumType.values()[slot.getKey()].toString(),
+                                                    String.valueOf(slot.getValue().estimate()));
+                collector.collect(new Pair<Integer, TypeValue>(year, typeValue));
+            }
+        }
+    }
+
+    // Mapper del modo con orden secundario: la clave tiene el año y el nombre del
+    // album, y el valor el tipo y el nombre para el reducer
+    public static class AlbumTypesSortMapper 
+    extends AvroMapper<SpotifyTrack, Pair<AlbumKey, TypeValue>> 
+    {
+        @Override
+        public void map(SpotifyTrack track, 
+                        AvroCollector<Pair<AlbumKey, TypeValue>> 
+                        collector, 
+                        Reporter reporter)
+        throws IOException 
+        {
+            Integer year = track.getYearOfRelease();
+            CharSequence albumName = track.getAlbumName();
+            AlbumType albumType = track.getAlbumType();
+
+            if (albumType != null && albumName != null) 
+            {
+                AlbumKey albumKey = new AlbumKey(year == null || year == 1 ? 0 : year, 0, albumName);
+                collector.collect(new Pair<AlbumKey, TypeValue>(albumKey, new TypeValue(albumType.toString(), albumName)));
+            } 
+        }
+    }
+
+    // Reducer del modo con orden secundario: los albumes del año llegan ordenados
+    // por nombre y, como en el modo exacto, cada album cuenta una sola vez en el
+    // tipo con el que aparece primero
+    public static class AlbumTypesSortReducer 
+    extends AvroReducer<AlbumKey, TypeValue, Pair<Integer, TypeValue>> 
+    {
+        private final DistinctAlbums.SortedAlbums uniqueAlbums = new DistinctAlbums.SortedAlbums();
+
+        @Override
+        public void reduce( AlbumKey key, 
+                            Iterable<TypeValue> values, 
+                            AvroCollector<Pair<Integer, TypeValue>> collector,
+                            Reporter reporter) 
+        throws IOException {
+
+            // La clave es la del primer valor del grupo, solo se usa su año
+            Integer year = key.getYear();
+            uniqueAlbums.clear();
+            Map<CharSequence, Integer> typeCounter =  new HashMap<>();
+            for (TypeValue typeValue : values) 
+            {
+                if (uniqueAlbums.add(typeValue.getAlbums()))
+                {
+                    typeCounter.merge(typeValue.getType().toString(), 1, Integer::sum);
+                }
+            }
+
+            for (Map.Entry<CharSequence, Integer> type : typeCounter.entrySet()) 
+            {
+                TypeValue typeValue = new TypeValue(type.getKey(), type.getValue().toString());
+                collector.collect(new Pair<Integer, TypeValue>(year, typeValue));
+            }
+        }
+    }
+
     // Configura y ejecuta el trabajo de MapReduce.
     // args:  Argumentos de la línea de comandos: [ruta de entrada] [ruta de salida]
     // retorna  0 si el trabajo se completa con éxito, un valor distinto de cero si falla.
@@ -128,15 +227,29 @@ public class AlbumTypes extends Configured implements Tool
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         // Establecemos los paths de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        // Establecemos el mappper y reducer
-        AvroJob.setMapperClass(conf, AlbumTypesMapper.class);
-        AvroJob.setReducerClass(conf, AlbumTypesReducer.class);
+        // Establecemos el mappper y reducer. En modo aproximado se envian sketches
+        // HyperLogLog y en modo sort los nombres llegan ordenados al reducer
+        if (DistinctAlbums.isApproximate(conf))
+        {
+            DistinctAlbums.configure(conf, AlbumTypesSketchMapper.class, AlbumTypesSketchReducer.class);
+        }
+        else if (DistinctAlbums.isSorted(conf))
+        {
+            DistinctAlbums.configureSorted(conf, AlbumTypesSortMapper.class, AlbumTypesSortReducer.class, 
+                                           TypeValue.getClassSchema());
+        }
+        else
+        {
+            AvroJob.setMapperClass(conf, AlbumTypesMapper.class);
+            AvroJob.setReducerClass(conf, AlbumTypesReducer.class);
+        }
 
         // Especificamos el esquema Avro de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "album_type", "album_name");
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.INT), TypeValue.getClassSchema() ));
 
         // Ejecuta el trabajo de MapReduce
@@ -161,7 +274,12 @@ public class AlbumTypes extends Configured implements Tool
             System.out.println("Trabajo terminado con éxito");
 
             // Comienzo del proceso de deserialización
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida. En el
+            // modo hll los resultados empiezan con el error de las estimaciones
+            GenericOptionsParser parser = new GenericOptionsParser(args);
+            String[] paths = parser.getRemainingArgs();
+            String errorLine = DistinctAlbums.errorLine(parser.getConfiguration());
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
 
             for (File outputFile : outputFiles) 
@@ -171,7 +289,10 @@ public class AlbumTypes extends Configured implements Tool
                     String textName = outputFile.getName().replace(".avro", ".txt");
 
                     List<String> records = DeserializationData.getPairIntTypeValueRecords(outputFile.getAbsolutePath());
-                    
+                    // En el modo hll agregamos el error de las estimaciones al principio
+                    if (errorLine != null) {
+                        records.add(0, errorLine);
+                    }
                     File textFile = new File(outputFile.getParent(), textName);
 
                     FileUtils.writeLines(textFile, records);
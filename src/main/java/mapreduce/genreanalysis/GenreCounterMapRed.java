@@ -5,11 +5,13 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 import java.io.File;
 
 import org.apache.avro.*;
 import org.apache.avro.Schema.Type;
 import org.apache.avro.mapred.*;
+import org.apache.avro.util.Utf8;
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.*;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -20,29 +22,116 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
 
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
+import mapreduce.SpotifyDictionaries;
+import mapreduce.SpotifyInputFormat;
 import mapreduce.DeserializationData;
+import mapreduce.ShuffleReport;
 
 
 public class GenreCounterMapRed extends Configured implements Tool{
-    public static class GenreCounterMapper extends AvroMapper<spotify, Pair<CharSequence, Integer>> {
+    public static class GenreCounterMapper extends AvroMapper<SpotifyTrack, Pair<CharSequence, Integer>> {
         private static final List<String> GENRES = Arrays.asList(
             "hop", "country", "rock", "jazz", "pop", "reggae", "metal", "blues", "rap", "blues", "classical", "house", "folk", "dance",
             "r&b", "indie", "punk", "electronic", "hardcore", "trap"
         );
 
         @Override
-        public void map(spotify track, AvroCollector<Pair<CharSequence, Integer>> collector, Reporter reporter)
+        public void map(SpotifyTrack track, AvroCollector<Pair<CharSequence, Integer>> collector, Reporter reporter)
                 throws IOException {
+            //Las filas sin genero se descartan, igual que en GenreCodeMapper
             CharSequence genre = track.getGenreId();
+            if (genre != null) {
+                collector.collect(new Pair<CharSequence, Integer>(mainGenre(genre), 1));
+            }
+        }
+
+        // Genero principal: la ultima palabra del genero si es uno de GENRES
+        static CharSequence mainGenre(CharSequence genre) {
             String[] genreSplit = genre.toString().split(" ");
             String mainGenre = genreSplit[genreSplit.length - 1];
             if (GENRES.contains(mainGenre)) {
-                genre = mainGenre;
+                return mainGenre;
+            }
+            return genre;
+        }
+
+    }
+
+    // Generos principales del diccionario genre_id de la entrada, ordenados como
+    // los ordena Avro, para que las claves enteras salgan en el mismo orden que los textos
+    private static Utf8[] mainGenres(SpotifyDictionaries dictionaries) {
+        TreeSet<Utf8> mainGenres = new TreeSet<>();
+        for (Utf8 genre : dictionaries.getGenres().toArray()) {
+            mainGenres.add(new Utf8(GenreCounterMapper.mainGenre(genre).toString()));
+        }
+        return mainGenres.toArray(new Utf8[0]);
+    }
+
+    // Mapper para la entrada serializada con diccionarios: el genero principal de
+    // cada genre_code se calcula una sola vez y se envia su posicion en mainGenres()
+    public static class GenreCodeMapper extends AvroMapper<SpotifyTrack, Pair<Integer, Integer>> {
+        private int[] mainGenreOf;
+
+        @Override
+        public void configure(JobConf job) {
+            try {
+                SpotifyDictionaries dictionaries = SpotifyDictionaries.forJob(job);
+                Utf8[] mainGenres = mainGenres(dictionaries);
+                Utf8[] genres = dictionaries.getGenres().toArray();
+                mainGenreOf = new int[genres.length];
+                for (int code = 0; code < genres.length; code++) {
+                    Utf8 mainGenre = new Utf8(GenreCounterMapper.mainGenre(genres[code]).toString());
+                    mainGenreOf[code] = Arrays.binarySearch(mainGenres, mainGenre);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void map(SpotifyTrack track, AvroCollector<Pair<Integer, Integer>> collector, Reporter reporter)
+                throws IOException {
+            Integer genreCode = track.getGenreCode();
+            if (genreCode != null) {
+                collector.collect(new Pair<Integer, Integer>(mainGenreOf[genreCode], 1));
+            }
+        }
+    }
+
+    // Combiner del mapper con diccionarios: suma las cuentas de cada genero principal
+    public static class GenreCodeCombiner extends AvroReducer<Integer, Integer, Pair<Integer, Integer>> {
+        @Override
+        public void reduce(Integer key, Iterable<Integer> values, AvroCollector<Pair<Integer, Integer>> collector,
+                           Reporter reporter) throws IOException {
+            int sum = 0;
+            for (Integer value : values) {
+                sum += value;
+            }
+            collector.collect(new Pair<Integer, Integer>(key, sum));
+        }
+    }
+
+    public static class GenreCodeReducer extends AvroReducer<Integer, Integer, Pair<CharSequence,Integer>>{
+        private Utf8[] mainGenres;
+
+        @Override
+        public void configure(JobConf job) {
+            try {
+                mainGenres = mainGenres(SpotifyDictionaries.forJob(job));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-            collector.collect(new Pair<CharSequence, Integer>(genre, 1));
         }
 
+        @Override 
+        public void reduce(Integer key, Iterable<Integer> values, AvroCollector<Pair<CharSequence,Integer>> collector, Reporter reporter) throws IOException{
+            int sum = 0;
+            for (Integer value: values){
+                sum += value;
+            }
+            collector.collect(new Pair<CharSequence,Integer>(mainGenres[key],sum));
+        }
     }
     public static class GenreCounterReducer extends AvroReducer<CharSequence, Integer, Pair<CharSequence,Integer>>{
         @Override 
@@ -68,16 +157,27 @@ public class GenreCounterMapRed extends Configured implements Tool{
         Path outputPath = new Path(args[1]);
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        AvroJob.setMapperClass(conf, GenreCounterMapper.class);
-        AvroJob.setReducerClass(conf, GenreCounterReducer.class);
-
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.STRING),Schema.create(Type.INT)));
 
-        JobClient.runJob(conf);
+        // Con diccionarios se envia el genero principal como un entero
+        if (SpotifyInputFormat.hasDictionaries(conf)) {
+            SpotifyInputFormat.setColumns(conf, "genre_code");
+            AvroJob.setMapperClass(conf, GenreCodeMapper.class);
+            AvroJob.setCombinerClass(conf, GenreCodeCombiner.class);
+            AvroJob.setReducerClass(conf, GenreCodeReducer.class);
+            AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), Schema.create(Type.INT)));
+        } else {
+            SpotifyInputFormat.setColumns(conf, "genre_id");
+            AvroJob.setMapperClass(conf, GenreCounterMapper.class);
+            AvroJob.setCombinerClass(conf, GenreCounterReducer.class);
+            AvroJob.setReducerClass(conf, GenreCounterReducer.class);
+        }
+
+        ShuffleReport.print(JobClient.runJob(conf));
         return 0;
    }
 
@@ -88,7 +188,9 @@ public class GenreCounterMapRed extends Configured implements Tool{
 
 
     if(res == 0){
-        File outputDir = new File(args[1]);
+        //Se quitan las opciones -D para obtener el directorio de salida
+        String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+        File outputDir = new File(paths[1]);
         File[] outputFiles = outputDir.listFiles();
         for (File outputFile : outputFiles) {
             if (outputFile.getName().endsWith(".avro")) {
@@ -22,32 +22,34 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
 
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
+import mapreduce.SpotifyInputFormat;
 import mapreduce.DeserializationData;
 
 
 public class GenresByYearMapRed extends Configured implements Tool {
-    public static class GenresByYearMapper extends AvroMapper<spotify, Pair<Integer, CharSequence>> {
+    public static class GenresByYearMapper extends AvroMapper<SpotifyTrack, Pair<Integer, CharSequence>> {
         //Géneros principales más comunes
         private static final List<String> GENRES = Arrays.asList(
             "hop", "country", "rock", "jazz", "pop", "reggae", "metal", "blues", "rap", "classical", "house", "folk", "dance",
             "r&b", "indie", "punk", "electronic", "hardcore", "trap"
         );
+        //Si el género se puede agrupar en uno de los géneros principales (su última
+        //palabra), se devuelve ese género; si no, el mismo género
+        static CharSequence mainGenre(CharSequence genre) {
+            String[] genreSplit = genre.toString().split(" ");
+            String mainGenre = genreSplit[genreSplit.length - 1];
+            return GENRES.contains(mainGenre) ? mainGenre : genre;
+        }
+
         @Override
-        public void map(spotify track, AvroCollector<Pair<Integer, CharSequence>> collector, Reporter reporter)
+        public void map(SpotifyTrack track, AvroCollector<Pair<Integer, CharSequence>> collector, Reporter reporter)
                 throws IOException {
             //Se obtiene el año de lanzamiento de la canción
             Integer year = track.getYearOfRelease();
             //Se verifica que el año sea válido 
             if(year != null && year > 1){
-                CharSequence genre = track.getGenreId();
-                String[] genreSplit = genre.toString().split(" ");
-                String mainGenre = genreSplit[genreSplit.length - 1];
-                //Si el género se puede agrupar en uno de los géneros principales, se asigna
-                if (GENRES.contains(mainGenre)) {
-                    genre = mainGenre;
-                }
-                collector.collect(new Pair<Integer, CharSequence>(year, genre));
+                collector.collect(new Pair<Integer, CharSequence>(year, mainGenre(track.getGenreId())));
             }
         }
     }
@@ -79,7 +81,7 @@ public static class GenresByYearReducer extends AvroReducer<Integer, CharSequenc
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         //Se establecen los paths de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
         //Se establecen las clases del Mapper y Reducer
@@ -87,7 +89,8 @@ public static class GenresByYearReducer extends AvroReducer<Integer, CharSequenc
         AvroJob.setReducerClass(conf, GenresByYearReducer.class);
 
         //Se establecen los tipos de salida del Mapper y Reducer
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "genre_id");
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.INT),Schema.create(Type.STRING)));
 
         JobClient.runJob(conf);
@@ -101,7 +104,9 @@ public static class GenresByYearReducer extends AvroReducer<Integer, CharSequenc
     
         if(res == 0){
             //En caso de que el trabajo haya sido exitoso, se crea un archivo de texto con los resultados
-            File outputDir = new File(args[1]);
+            //Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
             for (File outputFile : outputFiles) {
                 if (outputFile.getName().endsWith(".avro")) {
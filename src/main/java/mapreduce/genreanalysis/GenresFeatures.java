@@ -2,8 +2,9 @@ package mapreduce.genreanalysis;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.avro.*;
 import org.apache.avro.Schema.Type;
@@ -20,110 +21,107 @@ import org.apache.hadoop.util.*;
 
 //Separar por decadas
 
-import classes.avro.spotify;
+import classes.avro.DecadeGenre;
+import classes.avro.GenreFeatureSums;
+import classes.avro.GenreProfile;
+import classes.avro.SpotifyTrack;
+import mapreduce.SpotifyInputFormat;
 import mapreduce.DeserializationData;
+import mapreduce.ShuffleReport;
 
 public class GenresFeatures extends Configured implements Tool{
-        //Función para separar por decadas el año de publicacion de una canción
-        private static String DecadeParser(Integer year){
-        if (year >= 1900 && year < 1910) {
-            return "1900s";
-        } else if (year >= 1910 && year < 1920) {
-            return "1910s";
-        } else if (year >= 1920 && year < 1930) {
-            return "1920s";
-        } else if (year >= 1930 && year < 1940) {
-            return "1930s";
-        } else if (year >= 1940 && year < 1950) {
-            return "1940s";
-        } else if (year >= 1950 && year < 1960) {
-            return "1950s";
-        } else if (year >= 1960 && year < 1970) {
-            return "1960s";
-        } else if (year >= 1970 && year < 1980) {
-            return "1970s";
-        } else if (year >= 1980 && year < 1990) {
-            return "1980s";
-        } else if (year >= 1990 && year < 2000) {
-            return "1990s";
-        } else if (year >= 2000 && year < 2010) {
-            return "2000s";
-        } else if (year >= 2010 && year < 2020) {
-            return "2010s";
-        } else {
-            return "2020s";
-        }
+    //Con -D spotify.genres.features=pop,rock solo se calculan esos géneros; sin la
+    //opción se calculan todos los géneros en la misma lectura de los datos
+    public static final String GENRES_KEY = "spotify.genres.features";
+
+    //Primer año de la década del año de publicación de una canción. Los años
+    //desde 2020 quedan en la década de 2020
+    static int decade(int year) {
+        return Math.min(year, 2020) / 10 * 10;
     }
 
+    public static class GenresFeatureMapper extends AvroMapper<SpotifyTrack, Pair<DecadeGenre, GenreFeatureSums>> {
+        //Géneros a seleccionar, vacío si se seleccionan todos
+        private Set<String> genresToSelect;
+
+        @Override
+        public void configure(JobConf job) {
+            genresToSelect = new HashSet<>(job.getTrimmedStringCollection(GENRES_KEY));
+        }
 
-     public static class GenresFeatureMapper extends AvroMapper<spotify, Pair<CharSequence, CharSequence>> {
         @Override
-        public void map(spotify track, AvroCollector<Pair<CharSequence, CharSequence>> collector, Reporter reporter)
+        public void map(SpotifyTrack track, AvroCollector<Pair<DecadeGenre, GenreFeatureSums>> collector, Reporter reporter)
         throws IOException {
-            //Género a seleccionar
-            String genreToSelect = "pop";
             Integer year = track.getYearOfRelease();
-            CharSequence genre_id = track.getGenreId(); 
-            String[] genreSplit = genre_id.toString().split(" ");
-            String mainGenre = genreSplit[genreSplit.length - 1];
-            //Verificamos si es posible agrupar el subgenero
-            if (mainGenre.equals(genreToSelect)) {
-                genre_id = mainGenre;
-            }      
-            if(year != null && year > 1900 && genre_id.equals(genreToSelect)){
-                //Casting de los valores de las caracteristicas a seleccionar
-                Integer explicit = (Integer) track.getExplicit();
-                Float energy = (Float) track.getEnergy();
-                Float loudness = (Float) track.getLoudness();
-                Float valence = (Float) track.getValence(); 
-                Float acousticness = (Float) track.getAcousticness();
-                String decade = DecadeParser(year);
-                collector.collect(new Pair<CharSequence, CharSequence>(decade, genre_id + "/" + explicit.toString() + "/" + energy.toString() + "/" + loudness.toString() + "/" + valence.toString() + "/" + acousticness.toString()));
-                
+            CharSequence genre_id = track.getGenreId();
+            if (year == null || year <= 1900 || genre_id == null) {
+                return;
+            }
+            //Se agrupa el género como en GenresByYearMapRed y TopGenresByYear, y
+            //tampoco se cuentan los géneros vacíos ni "Unknown"
+            String mainGenre = GenresByYearMapRed.GenresByYearMapper.mainGenre(genre_id).toString().trim();
+            if (mainGenre.isEmpty() || mainGenre.equals("Unknown")
+                    || (!genresToSelect.isEmpty() && !genresToSelect.contains(mainGenre))) {
+                return;
+            }
+            //Valores de las caracteristicas a seleccionar
+            Integer explicit = track.getExplicit();
+            Float energy = track.getEnergy();
+            Float loudness = track.getLoudness();
+            Float valence = track.getValence();
+            Float acousticness = track.getAcousticness();
+            if (explicit == null || energy == null || loudness == null || valence == null || acousticness == null) {
+                return;
             }
+            GenreFeatureSums sums = new GenreFeatureSums(1L, (double) explicit, (double) energy, (double) loudness,
+                (double) valence, (double) acousticness);
+            collector.collect(new Pair<DecadeGenre, GenreFeatureSums>(new DecadeGenre(decade(year), mainGenre), sums));
         }
     }
 
-public static class GenresFeatureReducer extends AvroReducer<CharSequence, CharSequence, Pair<CharSequence, CharSequence>>{
-    @Override
-    public void reduce(CharSequence key, Iterable<CharSequence> values, AvroCollector<Pair<CharSequence, CharSequence>> collector, Reporter reporter)
-            throws IOException {
-        Float explicitMean = 0.0f;
-        Float energyMean = 0.0f;
-        Float loudnessMean = 0.0f;
-        Float valenceMean = 0.0f; 
-        Float acousticnessMean = 0.0f;
-        CharSequence genre = "";
-        Integer num = 0;        
-        //Por cada decada, se encuentra el promedio de cada caracteristica
-        for (CharSequence value : values) {
-            String[] features = value.toString().split("/");
-            explicitMean += Float.parseFloat(features[1]);
-            energyMean += Float.parseFloat(features[2]);
-            loudnessMean += Float.parseFloat(features[3]);
-            valenceMean += Float.parseFloat(features[4]);
-            acousticnessMean += Float.parseFloat(features[5]);
-            num += 1;
-            genre = features[0];
+    //Suma las caracteristicas de las canciones de cada década y género
+    private static GenreFeatureSums sum(Iterable<GenreFeatureSums> values) {
+        GenreFeatureSums total = new GenreFeatureSums(0L, 0.0, 0.0, 0.0, 0.0, 0.0);
+        for (GenreFeatureSums value : values) {
+            total.setSongs(total.getSongs() + value.getSongs());
+            total.setExplicit(total.getExplicit() + value.getExplicit());
+            total.setEnergy(total.getEnergy() + value.getEnergy());
+            total.setLoudness(total.getLoudness() + value.getLoudness());
+            total.setValence(total.getValence() + value.getValence());
+            total.setAcousticness(total.getAcousticness() + value.getAcousticness());
         }
-        if (num > 0) {
-            explicitMean /= num;
-            energyMean /= num;
-            loudnessMean /= num;
-            valenceMean /= num;
-            acousticnessMean /=num;
+        return total;
+    }
+
+    //Combiner: cada mapper envía una suma por década y género
+    public static class GenresFeatureCombiner extends AvroReducer<DecadeGenre, GenreFeatureSums, Pair<DecadeGenre, GenreFeatureSums>> {
+        @Override
+        public void reduce(DecadeGenre key, Iterable<GenreFeatureSums> values, AvroCollector<Pair<DecadeGenre, GenreFeatureSums>> collector,
+                           Reporter reporter) throws IOException {
+            collector.collect(new Pair<DecadeGenre, GenreFeatureSums>(key, sum(values)));
+        }
+    }
+
+    //Por cada década y género, se encuentra el promedio de cada caracteristica
+    public static class GenresFeatureReducer extends AvroReducer<DecadeGenre, GenreFeatureSums, Pair<CharSequence, GenreProfile>> {
+        @Override
+        public void reduce(DecadeGenre key, Iterable<GenreFeatureSums> values, AvroCollector<Pair<CharSequence, GenreProfile>> collector,
+                           Reporter reporter) throws IOException {
+            GenreFeatureSums total = sum(values);
+            long num = total.getSongs();
+            GenreProfile profile = new GenreProfile(key.getGenre().toString(), num, total.getExplicit() / num,
+                total.getEnergy() / num, total.getLoudness() / num, total.getValence() / num, total.getAcousticness() / num);
+            collector.collect(new Pair<CharSequence, GenreProfile>(key.getDecade() + "s", profile));
         }
-        collector.collect(new Pair<CharSequence, CharSequence>(key, genre + "/" + explicitMean.toString() + "/" + energyMean.toString() + "/"  + loudnessMean.toString() + "/" + valenceMean.toString() + "/" + acousticnessMean.toString()));
     }
-}
 
     public int run(String[] args) throws Exception {
         if(args.length != 2){
-            System.err.println("Usage: GenresByYear <input path> <output path>");
+            System.err.println("Usage: GenresFeatures <input path> <output path>");
             return -1;
         }
         //Se obtiene la configuración de hadoop y se nombra el trabajo
-        JobConf conf = new JobConf(getConf(), GenresByYearMapRed.class);
+        JobConf conf = new JobConf(getConf(), GenresFeatures.class);
         conf.setJobName("FeaturesGenre");
 
         //Se borra la carpeta de salida si ya existe
@@ -131,18 +129,22 @@ public static class GenresFeatureReducer extends AvroReducer<CharSequence, CharS
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         //Se designan los paths de los archivos de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        //Se designan las clases de los mappers y reducers
+        //Se designan las clases de los mappers, combiners y reducers
         AvroJob.setMapperClass(conf, GenresFeatureMapper.class);
+        AvroJob.setCombinerClass(conf, GenresFeatureCombiner.class);
         AvroJob.setReducerClass(conf, GenresFeatureReducer.class);
 
         //Se designan los tipos de salida del mapper y el reducer
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
-        AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.STRING),Schema.create(Type.STRING)));
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "genre_id", "explicit", "acousticness",
+            "energy", "loudness", "valence");
+        AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(DecadeGenre.getClassSchema(), GenreFeatureSums.getClassSchema()));
+        AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.STRING), GenreProfile.getClassSchema()));
 
-        JobClient.runJob(conf);
+        ShuffleReport.print(JobClient.runJob(conf));
         return 0;
     }
 
@@ -153,12 +155,14 @@ public static class GenresFeatureReducer extends AvroReducer<CharSequence, CharS
     
         if(res == 0){
             //Se crea un archivo de texto con los resultados de la salida usando el deserializador de avro
-            File outputDir = new File(args[1]);
+            //Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
             for (File outputFile : outputFiles) {
                 if (outputFile.getName().endsWith(".avro")) {
                 String textName = outputFile.getName().replace(".avro", ".txt");
-                List<String> records = DeserializationData.getRecords(outputFile.getAbsolutePath(), "string", "string");
+                List<String> records = DeserializationData.getPairStringGenreProfileRecords(outputFile.getAbsolutePath());
                 File textFile = new File(outputFile.getParent(), textName);
                 FileUtils.writeLines(textFile, records);
                 }
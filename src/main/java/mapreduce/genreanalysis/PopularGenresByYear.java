@@ -26,6 +26,7 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
 import mapreduce.DeserializationData;
+import mapreduce.ShuffleReport;
 
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.WritableComparator;
@@ -82,8 +83,9 @@ public class PopularGenresByYear extends Configured implements Tool {
         FileInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        //Se establecen las clases del mapper y el reducer
+        //Se establecen las clases del mapper, el combiner y el reducer
         AvroJob.setMapperClass(conf, PopularGenresMapper.class);
+        AvroJob.setCombinerClass(conf, PopularGenresReducer.class);
         AvroJob.setReducerClass(conf, PopularGenresReducer.class);
 
         //Se establecen los tipos de salida del mapper y el reducer
@@ -91,7 +93,7 @@ public class PopularGenresByYear extends Configured implements Tool {
         AvroJob.setOutputSchema(conf,Pair.getPairSchema(Schema.create(Type.STRING),Schema.create(Type.INT)));
 
         //Se ejecuta el trabajo 
-        JobClient.runJob(conf);
+        ShuffleReport.print(JobClient.runJob(conf));
         return 0;
     }
 
@@ -101,7 +103,9 @@ public class PopularGenresByYear extends Configured implements Tool {
         FileSystem fs = FileSystem.get(conf);
         //Si el trabajo fue exitoso, se crea un archivo de texto con los resultados
         if(res == 0){
-            File outputDir = new File(args[1]);
+            //Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
             //Se recorren los archivos de salida y se crea un archivo de texto con los resultados
             for (File outputFile : outputFiles) {
@@ -6,7 +6,9 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.io.File;
 
 import org.apache.avro.*;
@@ -29,10 +31,26 @@ import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
+import classes.avro.GenreCount;
 import mapreduce.IntPair;
 
+//Con -D spotify.genres.top=3 se escriben los 3 géneros más populares de cada año
+//(por defecto solo el primero), con los empates del último puesto
 public class SortPopularGenresByYearMapRed extends Configured implements Tool{
     static class PopularGenresByYearMapper extends Mapper<LongWritable, Text, IntPair, Text>{
+        //Géneros más populares de cada año en el split. La entrada ya tiene la
+        //cuenta total de cada año y género en una sola línea, así que los que no
+        //están entre los K de su año en el split tampoco lo están en el total y se
+        //descartan antes del shuffle: cada mapper envía a lo más K géneros (más
+        //los empates) por año
+        private final Map<Integer, TopGenres> topGenresByYear = new HashMap<>();
+        private int top;
+
+        @Override
+        protected void setup(Context context){
+            top = context.getConfiguration().getInt(TopGenresByYear.TOP_KEY, 1);
+        }
+
         @Override
         protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException{
             String line = value.toString();
@@ -52,23 +70,45 @@ public class SortPopularGenresByYearMapRed extends Configured implements Tool{
                 String genre = yearGenre[1];
                 //Se extrae el conteo y se convierte a entero
                 int count = Integer.parseInt(countSplit[1]);
-                //El año y la cantidad se envían como clave y el genero como valor 
-                context.write(new IntPair(year,count), new Text(genre));
+                //Se guarda el género entre los más populares del año en el split
+                topGenresByYear.computeIfAbsent(year, y -> new TopGenres(top)).add(genre, count);
             }
             }
             
         }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException{
+            for(Map.Entry<Integer, TopGenres> year: topGenresByYear.entrySet()){
+                for(GenreCount genre: year.getValue().genres()){
+                    //El año y la cantidad se envían como clave y el genero como valor 
+                    context.write(new IntPair(year.getKey(), genre.getCount()), new Text(genre.getGenre().toString()));
+                }
+            }
+        }
     }
 
     static class PopularGenresByYearReducer extends Reducer<IntPair, Text, IntPair, Text>{
+        private TopGenres topGenres;
+
+        @Override
+        protected void setup(Context context){
+            topGenres = new TopGenres(context.getConfiguration().getInt(TopGenresByYear.TOP_KEY, 1));
+        }
+
         @Override
         protected void reduce(IntPair key,Iterable<Text> values, Context context) throws IOException, InterruptedException{
-            String genreList = "";
-            //Se concatenan dos géneros en caso de que se repitan la misma cantidad de veces en un mismo año
+            //Al recorrer los valores la clave cambia a la cantidad de cada género
+            int year = key.getFirst().get();
+            topGenres.clear();
             for(Text genre: values){
-                genreList = genre + "-";
+                topGenres.add(genre.toString(), key.getSecond().get());
+            }
+            //Se escribe una línea por género, de más a menos popular, y los
+            //géneros empatados con el último también se escriben
+            for(GenreCount genre: topGenres.genres()){
+                context.write(new IntPair(year, genre.getCount()), new Text(genre.getGenre().toString()));
             }
-            context.write(key,new Text(genreList));
         }
     }
 
@@ -119,6 +159,10 @@ public class SortPopularGenresByYearMapRed extends Configured implements Tool{
         }
         //Se obtiene la configuración de hadoop
         Configuration conf = getConf();
+        if(conf.getInt(TopGenresByYear.TOP_KEY, 1) < 1){
+            System.err.println(TopGenresByYear.TOP_KEY + " debe ser al menos 1");
+            return -1;
+        }
         Job job = Job.getInstance(conf, "PopularGenresByYearSSMapRed");
         
         //Se borran la carpeta del path de salida si ya existe
@@ -0,0 +1,67 @@
+package mapreduce.genreanalysis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import classes.avro.GenreCount;
+
+//Guarda los K géneros con más canciones de un año en un min-heap de tamaño K: un
+//género nuevo solo entra si tiene más canciones que el menor del heap, y entonces
+//sale el menor. Los géneros empatados con el menor del heap se guardan aparte
+//para no perder los empates del último puesto. Se puede reutilizar entre años
+//con clear()
+public class TopGenres {
+    private static final Comparator<GenreCount> ASCENDING =
+        Comparator.comparingInt(GenreCount::getCount).thenComparing(g -> g.getGenre().toString(), Comparator.reverseOrder());
+
+    private final int top;
+    private final PriorityQueue<GenreCount> heap;
+    //Géneros fuera del heap con la misma cantidad que el menor del heap
+    private final List<GenreCount> ties = new ArrayList<>();
+
+    public TopGenres(int top) {
+        if (top < 1) {
+            throw new IllegalArgumentException("La cantidad de géneros debe ser al menos 1: " + top);
+        }
+        this.top = top;
+        this.heap = new PriorityQueue<>(top, ASCENDING);
+    }
+
+    public void add(CharSequence genre, int count) {
+        if (heap.size() < top) {
+            heap.add(new GenreCount(genre.toString(), count));
+            return;
+        }
+        int min = heap.peek().getCount();
+        if (count < min) {
+            return;
+        }
+        if (count == min) {
+            ties.add(new GenreCount(genre.toString(), count));
+            return;
+        }
+        heap.add(new GenreCount(genre.toString(), count));
+        GenreCount removed = heap.poll();
+        //Si el menor del heap subió, los empates anteriores ya no están entre los K
+        if (removed.getCount() == heap.peek().getCount()) {
+            ties.add(removed);
+        } else {
+            ties.clear();
+        }
+    }
+
+    //Géneros guardados de más a menos canciones, y por nombre si empatan
+    public List<GenreCount> genres() {
+        List<GenreCount> genres = new ArrayList<>(heap);
+        genres.addAll(ties);
+        genres.sort(ASCENDING.reversed());
+        return genres;
+    }
+
+    public void clear() {
+        heap.clear();
+        ties.clear();
+    }
+}
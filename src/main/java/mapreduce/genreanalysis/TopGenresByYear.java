@@ -0,0 +1,157 @@
+package mapreduce.genreanalysis;
+
+//Generos mas populares por año en un solo trabajo
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.*;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.mapred.*;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+import classes.avro.GenreCount;
+import classes.avro.SpotifyTrack;
+import mapreduce.SpotifyInputFormat;
+import mapreduce.DeserializationData;
+import mapreduce.ShuffleReport;
+
+//Hace lo mismo que GenresByYearMapRed, PopularGenresByYear y
+//SortPopularGenresByYearMapRed juntos, sin escribir ni volver a leer los
+//resultados intermedios: el mapper envía el año y el género de cada canción, el
+//combiner suma las canciones de cada género del año y el reducer escribe los
+//géneros con más canciones de cada año
+public class TopGenresByYear extends Configured implements Tool {
+    //Con -D spotify.genres.top=3 se escriben los 3 géneros con más canciones de
+    //cada año (por defecto solo el más popular). Los géneros empatados con el
+    //último también se escriben
+    public static final String TOP_KEY = "spotify.genres.top";
+
+    public static class TopGenresMapper extends AvroMapper<SpotifyTrack, Pair<Integer, GenreCount>> {
+        @Override
+        public void map(SpotifyTrack track, AvroCollector<Pair<Integer, GenreCount>> collector, Reporter reporter)
+                throws IOException {
+            Integer year = track.getYearOfRelease();
+            CharSequence genreId = track.getGenreId();
+            //Se verifica que el año sea válido y que la canción tenga género
+            if (year == null || year <= 1 || genreId == null) {
+                return;
+            }
+            //Se agrupa el género como en GenresByYearMapRed y, como en
+            //PopularGenresByYear, no se cuentan los géneros vacíos ni "Unknown"
+            String genre = GenresByYearMapRed.GenresByYearMapper.mainGenre(genreId).toString().trim();
+            if (genre.isEmpty() || genre.equals("Unknown")) {
+                return;
+            }
+            collector.collect(new Pair<Integer, GenreCount>(year, new GenreCount(genre, 1)));
+        }
+    }
+
+    //Suma las canciones de cada género del año
+    static Map<String, Integer> sum(Iterable<GenreCount> values) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (GenreCount value : values) {
+            counts.merge(value.getGenre().toString(), value.getCount(), Integer::sum);
+        }
+        return counts;
+    }
+
+    public static class TopGenresCombiner extends AvroReducer<Integer, GenreCount, Pair<Integer, GenreCount>> {
+        @Override
+        public void reduce(Integer key, Iterable<GenreCount> values, AvroCollector<Pair<Integer, GenreCount>> collector,
+                Reporter reporter) throws IOException {
+            for (Map.Entry<String, Integer> genre : sum(values).entrySet()) {
+                collector.collect(new Pair<Integer, GenreCount>(key, new GenreCount(genre.getKey(), genre.getValue())));
+            }
+        }
+    }
+
+    public static class TopGenresReducer extends AvroReducer<Integer, GenreCount, Pair<Integer, GenreCount>> {
+        private TopGenres topGenres;
+
+        @Override
+        public void configure(JobConf job) {
+            topGenres = new TopGenres(job.getInt(TOP_KEY, 1));
+        }
+
+        @Override
+        public void reduce(Integer key, Iterable<GenreCount> values, AvroCollector<Pair<Integer, GenreCount>> collector,
+                Reporter reporter) throws IOException {
+            //Las cuentas del combiner son parciales, así que primero se suman las
+            //de cada género y después se eligen los más populares
+            topGenres.clear();
+            for (Map.Entry<String, Integer> genre : sum(values).entrySet()) {
+                topGenres.add(genre.getKey(), genre.getValue());
+            }
+            for (GenreCount genre : topGenres.genres()) {
+                collector.collect(new Pair<Integer, GenreCount>(key, genre));
+            }
+        }
+    }
+
+    public int run(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: TopGenresByYear <input path> <output path>");
+            return -1;
+        }
+        //Se obtiene la configuración de hadoop
+        JobConf conf = new JobConf(getConf(), TopGenresByYear.class);
+        conf.setJobName("TopGenresByYear");
+        if (conf.getInt(TOP_KEY, 1) < 1) {
+            System.err.println(TOP_KEY + " debe ser al menos 1");
+            return -1;
+        }
+
+        //Se elimina el directorio de salida si ya existe
+        Path outputPath = new Path(args[1]);
+        outputPath.getFileSystem(conf).delete(outputPath, true);
+
+        //Se establecen los paths de entrada y salida
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
+        FileOutputFormat.setOutputPath(conf, new Path(args[1]));
+
+        //Se establecen las clases del mapper, el combiner y el reducer
+        AvroJob.setMapperClass(conf, TopGenresMapper.class);
+        AvroJob.setCombinerClass(conf, TopGenresCombiner.class);
+        AvroJob.setReducerClass(conf, TopGenresReducer.class);
+
+        //Se establecen los tipos de salida del mapper y el reducer
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "genre_id");
+        AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), GenreCount.getClassSchema()));
+
+        ShuffleReport.print(JobClient.runJob(conf));
+        return 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int res = ToolRunner.run(new Configuration(), new TopGenresByYear(), args);
+
+        if (res == 0) {
+            //En caso de que el trabajo haya sido exitoso, se crea un archivo de texto con los resultados
+            //Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
+            File[] outputFiles = outputDir.listFiles();
+            for (File outputFile : outputFiles) {
+                if (outputFile.getName().endsWith(".avro")) {
+                    String textName = outputFile.getName().replace(".avro", ".txt");
+                    List<String> records = DeserializationData.getPairIntGenreCountRecords(outputFile.getAbsolutePath());
+                    File textFile = new File(outputFile.getParent(), textName);
+                    FileUtils.writeLines(textFile, records);
+                }
+            }
+            System.out.println("Trabajo terminado con exito - TopGenresByYear");
+        } else {
+            System.out.println("Trabajo falló - TopGenresByYear");
+        }
+        System.exit(res);
+    }
+}
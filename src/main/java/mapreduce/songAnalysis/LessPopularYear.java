@@ -20,19 +20,20 @@ import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
-import classes.avro.spotify; 
+import classes.avro.SpotifyTrack; 
 
 public class LessPopularYear extends Configured implements Tool { 
     // Clase Mapper para procesar cada registro y emitir el año y el conteo de canciones impopulares
-    public static class ImpopularityMapper extends AvroMapper<spotify, Pair<Integer, Integer>> {
+    public static class ImpopularityMapper extends AvroMapper<SpotifyTrack, Pair<Integer, Integer>> {
 
         @Override
-        public void map(spotify spotifyRecord, AvroCollector<Pair<Integer, Integer>> collector, org.apache.hadoop.mapred.Reporter reporter) throws IOException {
+        public void map(SpotifyTrack spotifyRecord, AvroCollector<Pair<Integer, Integer>> collector, org.apache.hadoop.mapred.Reporter reporter) throws IOException {
             Integer year =  spotifyRecord.getYearOfRelease();
-            Integer popularity = (Integer) spotifyRecord.getPopularity();
+            Integer popularity = spotifyRecord.getPopularity();
             
             // Manejar año nulo o invalido
             if (year == null || year == 1) {
@@ -74,19 +75,22 @@ public class LessPopularYear extends Configured implements Tool {
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         // Establecer rutas de entrada y salida
-        FileInputFormat.addInputPath(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-        // Establecer clases Mapper y Reducer
+        // Establecer clases Mapper, Combiner y Reducer. La suma se puede hacer en el map
         AvroJob.setMapperClass(conf, ImpopularityMapper.class);
+        AvroJob.setCombinerClass(conf, ImpopularityReducer.class);
         AvroJob.setReducerClass(conf, ImpopularityReducer.class);
 
         // Establecer esquemas de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "popularity");
+        SpotifyInputFormat.setMaximum(conf, "popularity", 49);
         AvroJob.setOutputSchema(conf ,Pair.getPairSchema(Schema.create(Type.INT),Schema.create(Type.INT)));
 
         // Ejecutar el trabajo
-        JobClient.runJob(conf);
+        ShuffleReport.print(JobClient.runJob(conf));
         return 0;
     }
 
@@ -95,7 +99,9 @@ public class LessPopularYear extends Configured implements Tool {
         int res = ToolRunner.run(new Configuration(), new LessPopularYear(), args);
     
         if(res == 0){
-            File outputDir = new File(args[1]);
+            //Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
             for (File outputFile : outputFiles) {
                 if (outputFile.getName().endsWith(".avro")) {
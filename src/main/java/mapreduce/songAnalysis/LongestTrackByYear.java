@@ -20,18 +20,19 @@ import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
-import classes.avro.spotify;
+import classes.avro.SpotifyTrack;
 
 public class LongestTrackByYear extends Configured implements Tool {
 
     // Clase Mapper para procesar cada registro y emitir el año y la longitud del nombre de la canción
-    public static class TrackMapper extends AvroMapper<spotify, Pair<Integer, Integer>> {
+    public static class TrackMapper extends AvroMapper<SpotifyTrack, Pair<Integer, Integer>> {
         
         @Override
-        public void map(spotify spotifyRecord, AvroCollector<Pair<Integer, Integer>> collector, org.apache.hadoop.mapred.Reporter reporter) throws IOException {
+        public void map(SpotifyTrack spotifyRecord, AvroCollector<Pair<Integer, Integer>> collector, org.apache.hadoop.mapred.Reporter reporter) throws IOException {
             Integer yearOfRelease = spotifyRecord.getYearOfRelease();
             CharSequence trackNameUtf8 = spotifyRecord.getTrackName();
 
@@ -78,7 +79,7 @@ public class LongestTrackByYear extends Configured implements Tool {
         outputPath.getFileSystem(conf).delete(outputPath, true);
     
         // Establecer rutas de entrada y salida
-        FileInputFormat.setInputPaths(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
     
         // Establecer clases Mapper y Reducer
@@ -86,7 +87,8 @@ public class LongestTrackByYear extends Configured implements Tool {
         AvroJob.setReducerClass(conf, LongestTrackReducer.class);
 
         // Establecer esquemas de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "track_name");
         AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), Schema.create(Type.INT)));
     
         // Ejecutar el trabajo
@@ -99,7 +101,9 @@ public class LongestTrackByYear extends Configured implements Tool {
         int res = ToolRunner.run(new Configuration(), new LongestTrackByYear(), args);
 
         if (res == 0) {
-            File outputDir = new File(args[1]);
+            //Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
             for (File outputFile : outputFiles) {
                 if (outputFile.getName().endsWith(".avro")) {
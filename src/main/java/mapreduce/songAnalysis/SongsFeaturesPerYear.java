@@ -2,7 +2,10 @@ package mapreduce;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.avro.Schema;
 import org.apache.avro.Schema.Type;
@@ -21,97 +24,141 @@ import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
+import classes.avro.FeatureStats;
 import classes.avro.SongsFeatures;
-import classes.avro.spotify;
+import classes.avro.SongsFeaturesPartial;
+import classes.avro.SongsFeaturesSummary;
+import classes.avro.SpotifyTrack;
 
 public class SongsFeaturesPerYear extends Configured implements Tool {
 
-    // Clase Mapper para procesar cada registro y emitir el año y las caracteristicas de la canción
-    public static class SongsFeaturesMapper extends AvroMapper<spotify, Pair<Integer, SongsFeatures>> 
+    // Cantidad de caracteristicas, en el orden de los campos de SongsFeatures
+    private static final int FEATURES = SongsFeatures.getClassSchema().getFields().size();
+
+    // Cantidad de canciones, suma y suma de cuadrados de cada caracteristica. Es
+    // lo que se envia al reducer en un SongsFeaturesPartial: dos sumas parciales
+    // se unen sumando sus campos, y al final salen el promedio y la desviacion
+    public static class FeatureMoments {
+
+        private long count;
+        private final double[] sums = new double[FEATURES];
+        private final double[] squares = new double[FEATURES];
+
+        public void add(SongsFeatures features) {
+            for (int i = 0; i < FEATURES; i++) {
+                double value = ((Number) features.get(i)).doubleValue();
+                sums[i] += value;
+                squares[i] += value * value;
+            }
+            count++;
+        }
+
+        public void merge(SongsFeaturesPartial partial) {
+            for (int i = 0; i < FEATURES; i++) {
+                sums[i] += partial.getSums().get(i);
+                squares[i] += partial.getSquares().get(i);
+            }
+            count += partial.getCount();
+        }
+
+        public SongsFeaturesPartial toPartial() {
+            List<Double> sumList = new ArrayList<>(FEATURES);
+            List<Double> squareList = new ArrayList<>(FEATURES);
+            for (int i = 0; i < FEATURES; i++) {
+                sumList.add(sums[i]);
+                squareList.add(squares[i]);
+            }
+            return new SongsFeaturesPartial(count, sumList, squareList);
+        }
+
+        // Promedio y desviacion estandar (de la poblacion) de cada caracteristica
+        public SongsFeaturesSummary toSummary() {
+            SongsFeaturesSummary summary = new SongsFeaturesSummary();
+            summary.setSongs(count);
+            for (int i = 0; i < FEATURES; i++) {
+                double mean = sums[i] / count;
+                double variance = Math.max(0, squares[i] / count - mean * mean);
+                summary.put(i + 1, new FeatureStats(mean, Math.sqrt(variance)));
+            }
+            return summary;
+        }
+    }
+
+    // Clase Mapper para procesar cada registro: suma las caracteristicas de las
+    // canciones de cada año del split y envia una suma parcial por año en close()
+    public static class SongsFeaturesMapper extends AvroMapper<SpotifyTrack, Pair<Integer, SongsFeaturesPartial>> 
     {
+        private final Map<Integer, FeatureMoments> years = new HashMap<>();
+        private AvroCollector<Pair<Integer, SongsFeaturesPartial>> collector;
+
         @Override
-        public void map(spotify track, AvroCollector<Pair<Integer, SongsFeatures>> collector, Reporter reporter) throws IOException {
+        public void map(SpotifyTrack track, AvroCollector<Pair<Integer, SongsFeaturesPartial>> collector, Reporter reporter) throws IOException {
 
             Integer year = track.getYearOfRelease();
             CharSequence name = track.getTrackName();
-            Integer popularity = (int)track.getPopularity();
+            Integer popularity = track.getPopularity();
 
             // Filtrar registros con año válido, nombre no nulo y popularidad mayor a 70
-            if (year != null && year != 1 && name != null && popularity > 70) {
+            if (year != null && year != 1 && name != null && popularity != null && popularity > 70) {
                 SongsFeatures SF = new SongsFeatures(
-                    (int) track.getExplicit(),
-                    (float) track.getAcousticness(),
-                    (float) track.getDanceability(),
-                    (float) track.getEnergy(),
-                    (float) track.getInstrumentalness(),
-                    (int) track.getKey(),
-                    (float) track.getLiveness(),
-                    (float) track.getLoudness(),
-                    (float) track.getSpeechiness(),
-                    (float) track.getTempo(),
-                    (int) track.getTimeSignature(),
-                    (float) track.getValence()
+                    track.getExplicit(),
+                    track.getAcousticness(),
+                    track.getDanceability(),
+                    track.getEnergy(),
+                    track.getInstrumentalness(),
+                    track.getKey(),
+                    track.getLiveness(),
+                    track.getLoudness(),
+                    track.getSpeechiness(),
+                    track.getTempo(),
+                    track.getTimeSignature(),
+                    track.getValence()
                 );
 
-                // Emitir el año y las caracteristicas de la canción
-                collector.collect(new Pair<>(year, SF));
+                // Se suman las caracteristicas de la canción en las de su año
+                this.collector = collector;
+                years.computeIfAbsent(year, y -> new FeatureMoments()).add(SF);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Map.Entry<Integer, FeatureMoments> year : years.entrySet()) {
+                collector.collect(new Pair<Integer, SongsFeaturesPartial>(year.getKey(), year.getValue().toPartial()));
             }
         }
     }
 
-    // Clase Reducer para calcular el promedio de las características de las canciones por año
-    public static class AverageFeaturesReducer extends AvroReducer<Integer, SongsFeatures, Pair<Integer, SongsFeatures>> {
+    // Clase Combiner para unir las sumas parciales de cada año
+    public static class FeaturesCombiner extends AvroReducer<Integer, SongsFeaturesPartial, Pair<Integer, SongsFeaturesPartial>> {
         @Override
-        public void reduce(Integer year, Iterable<SongsFeatures> SFs, AvroCollector<Pair<Integer, SongsFeatures>> collector, Reporter reporter) throws IOException {
+        public void reduce(Integer year, Iterable<SongsFeaturesPartial> partials, AvroCollector<Pair<Integer, SongsFeaturesPartial>> collector, Reporter reporter) throws IOException {
+            FeatureMoments moments = new FeatureMoments();
+            for (SongsFeaturesPartial partial : partials) {
+                moments.merge(partial);
+            }
+            collector.collect(new Pair<Integer, SongsFeaturesPartial>(year, moments.toPartial()));
+        }
+    }
+
+    // Clase Reducer para calcular el promedio y la desviacion estandar de las
+    // características de las canciones por año
+    public static class AverageFeaturesReducer extends AvroReducer<Integer, SongsFeaturesPartial, Pair<Integer, SongsFeaturesSummary>> {
+        @Override
+        public void reduce(Integer year, Iterable<SongsFeaturesPartial> partials, AvroCollector<Pair<Integer, SongsFeaturesSummary>> collector, Reporter reporter) throws IOException {
             
-            int count = 0;
-            int explicitSum = 0;
-            float acousticnessSum = 0, danceabilitySum = 0, energySum = 0;
-            float instrumentalnessSum = 0, livenessSum = 0, loudnessSum = 0;
-            float speechinessSum = 0, tempoSum = 0, valenceSum = 0;
-            int key = 0, timeSignature = 0;
-    
-            // Sumar las caracteristicas de todas las canciones del mismo año
-            for (SongsFeatures SF : SFs) {
-                explicitSum += SF.getExplicit();
-                acousticnessSum += SF.getAcousticness();
-                danceabilitySum += SF.getDanceability();
-                energySum += SF.getEnergy();
-                instrumentalnessSum += SF.getInstrumentalness();
-                livenessSum += SF.getLiveness();
-                loudnessSum += SF.getLoudness();
-                speechinessSum += SF.getSpeechiness();
-                tempoSum += SF.getTempo();
-                valenceSum += SF.getValence();
-                key = SF.getKey();
-                timeSignature = SF.getTimeSignature();
-                
-                count++;
+            // Unir las sumas parciales de todas las canciones del mismo año
+            FeatureMoments moments = new FeatureMoments();
+            for (SongsFeaturesPartial partial : partials) {
+                moments.merge(partial);
             }
     
-            // Calcular el promedio de las caracteristicas si hay al menos una canción
-            if (count > 0) {
-                SongsFeatures avgSF = new SongsFeatures(
-                    explicitSum / count,
-                    acousticnessSum / count,
-                    danceabilitySum / count,
-                    energySum / count,
-                    instrumentalnessSum / count,
-                    key,
-                    livenessSum / count,
-                    loudnessSum / count,
-                    speechinessSum / count,
-                    tempoSum / count,
-                    timeSignature, 
-                    valenceSum / count
-                );
-    
-                // Emitir el año y las caracteristicas promedio
-                collector.collect(new Pair<>(year, avgSF));
-            }
+            // Emitir el año y las caracteristicas promedio
+            collector.collect(new Pair<>(year, moments.toSummary()));
         }
     }
     
@@ -131,20 +178,25 @@ public class SongsFeaturesPerYear extends Configured implements Tool {
         outputPath.getFileSystem(conf).delete(outputPath, true);
 
         // Establecer rutas de entrada y salida
-        FileInputFormat.addInputPath(conf, new Path(args[0]));
+        SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
         FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
         // Establecer esquemas de entrada y salida
-        AvroJob.setInputSchema(conf, spotify.getClassSchema());
-        AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), SongsFeatures.getClassSchema()));
-        AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), SongsFeatures.getClassSchema()));
-
-        // Establecer clases Mapper y Reducer
+        SpotifyInputFormat.configure(conf);
+        SpotifyInputFormat.setColumns(conf, "year_of_release", "track_name", "popularity", "explicit",
+            "acousticness", "danceability", "energy", "instrumentalness", "key", "liveness", "loudness",
+            "speechiness", "tempo", "time_signature", "valence");
+        SpotifyInputFormat.setMinimum(conf, "popularity", 71);
+        AvroJob.setMapOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), SongsFeaturesPartial.getClassSchema()));
+        AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.INT), SongsFeaturesSummary.getClassSchema()));
+
+        // Establecer clases Mapper, Combiner y Reducer
         AvroJob.setMapperClass(conf, SongsFeaturesMapper.class);
+        AvroJob.setCombinerClass(conf, FeaturesCombiner.class);
         AvroJob.setReducerClass(conf, AverageFeaturesReducer.class);
 
         // Ejecutar el trabajo
-        JobClient.runJob(conf);
+        ShuffleReport.print(JobClient.runJob(conf));
         return 0;
     }
 
@@ -164,7 +216,9 @@ public class SongsFeaturesPerYear extends Configured implements Tool {
             System.out.println("Trabajo terminado con éxito");
 
             // Comienzo del proceso de deserialización
-            File outputDir = new File(args[1]);
+            // Se quitan las opciones -D para obtener el directorio de salida
+            String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+            File outputDir = new File(paths[1]);
             File[] outputFiles = outputDir.listFiles();
 
             for (File outputFile : outputFiles) 
@@ -172,7 +226,7 @@ public class SongsFeaturesPerYear extends Configured implements Tool {
                 if (outputFile.getName().endsWith(".avro")) 
                 {
                     String textName = outputFile.getName().replace(".avro", ".txt");
-                    List<String> records = DeserializationData.getPairIntSongsFeatures(outputFile.getAbsolutePath());
+                    List<String> records = DeserializationData.getPairIntSongsFeaturesSummary(outputFile.getAbsolutePath());
                     File textFile = new File(outputFile.getParent(), textName);
                     FileUtils.writeLines(textFile, records);
                 }
@@ -24,15 +24,16 @@ import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
-import classes.avro.spotify; 
+import classes.avro.SpotifyTrack; 
 
 public class TrackWordCount extends Configured implements Tool {
 
   // Clase Mapper para procesar cada registro y emitir palabras y su conteo
-  public static class TrackMapper extends AvroMapper<spotify, Pair<String, Integer>> {
+  public static class TrackMapper extends AvroMapper<SpotifyTrack, Pair<String, Integer>> {
       // Conjunto de palabras que se deben ignorar
       private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
           "i", "you", "your", "she", "her", "he", "his", "they", "their", "we", "our", "it", "is", "are", "the", "a","my",
@@ -48,7 +49,7 @@ public class TrackWordCount extends Configured implements Tool {
       ));
 
       @Override
-      public void map(spotify record, AvroCollector<Pair<String, Integer>> collector, Reporter reporter) throws IOException {
+      public void map(SpotifyTrack record, AvroCollector<Pair<String, Integer>> collector, Reporter reporter) throws IOException {
           if (record.getTrackName() != null) {
               // Convertir el nombre de la canción a minusculas y eliminar caracteres no alfabéticos
               String trackName = record.getTrackName().toString().toLowerCase().replaceAll("[^a-zA-Z ]", "");
@@ -100,19 +101,21 @@ public class TrackWordCount extends Configured implements Tool {
     outputPath.getFileSystem(conf).delete(outputPath, true);
 
     // Establecer rutas de entrada y salida
-    FileInputFormat.setInputPaths(conf, new Path(args[0]));
+    SpotifyInputFormat.setInputPaths(conf, new Path(args[0]));
     FileOutputFormat.setOutputPath(conf, new Path(args[1]));
 
-    // Establecer clases Mapper y Reducer
+    // Establecer clases Mapper, Combiner y Reducer. La suma se puede hacer en el map
     AvroJob.setMapperClass(conf, TrackMapper.class);
+    AvroJob.setCombinerClass(conf, IntSumReducer.class);
     AvroJob.setReducerClass(conf, IntSumReducer.class);
 
     // Establecer esquemas de entrada y salida
-    AvroJob.setInputSchema(conf, spotify.getClassSchema());
+    SpotifyInputFormat.configure(conf);
+    SpotifyInputFormat.setColumns(conf, "track_name");
     AvroJob.setOutputSchema(conf, Pair.getPairSchema(Schema.create(Type.STRING), Schema.create(Type.INT)));
 
     // Ejecutar el trabajo
-    JobClient.runJob(conf);
+    ShuffleReport.print(JobClient.runJob(conf));
     return 0;
   }
 
@@ -121,7 +124,9 @@ public class TrackWordCount extends Configured implements Tool {
     int res = ToolRunner.run(new Configuration(), new TrackWordCount(), args);
 
     if (res == 0) {
-      File outputDir = new File(args[1]);
+      //Se quitan las opciones -D para obtener el directorio de salida
+      String[] paths = new GenericOptionsParser(args).getRemainingArgs();
+      File outputDir = new File(paths[1]);
       File[] outputFiles = outputDir.listFiles();
       for (File outputFile : outputFiles) {
         if (outputFile.getName().endsWith(".avro")) {
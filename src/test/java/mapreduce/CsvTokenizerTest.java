@@ -0,0 +1,76 @@
+/**
+ * Este archivo contiene la prueba CsvTokenizerTest que compara la conversion
+ * rapida de CsvTokenizer.getFloat con Float.parseFloat.
+ */
+
+package mapreduce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// getFloat calcula directamente los valores con mantisa <= 2^24 y exponente
+// decimal entre -10 y 10, y delega el resto en Float.parseFloat. Los casos se
+// eligen alrededor de esos limites, donde un error de redondeo no se notaria
+public class CsvTokenizerTest {
+
+    private final CsvTokenizer tokenizer = new CsvTokenizer();
+
+    // Compara los bits para distinguir tambien -0.0 de 0.0
+    private void assertParsesLikeJdk(String value) {
+        byte[] line = ("x," + value + ",y").getBytes(StandardCharsets.UTF_8);
+        tokenizer.tokenize(line, 0, line.length);
+        assertEquals(Float.floatToIntBits(Float.parseFloat(value)), Float.floatToIntBits(tokenizer.getFloat(1)),
+                     value);
+    }
+
+    @Test
+    public void mantissaAroundTwoToTheTwentyFour() {
+        for (String value : new String[] {"16777215", "16777216", "16777217", "16777218", "16777219",
+                                          "1677721.5", "1677721.6", "1677721.7", "167772.17", "0.16777217",
+                                          "16777216e-10", "16777217e-10", "16777215e10", "16777217e10",
+                                          "-16777217", "+16777217", "00016777217", "16777217.000"}) {
+            assertParsesLikeJdk(value);
+        }
+    }
+
+    @Test
+    public void exponentAroundTen() {
+        for (String value : new String[] {"1e10", "1e11", "1e-10", "1e-11", "1.5e10", "1.5e9", "1.5e-9",
+                                          "0.0000000001", "0.00000000001", "12345678e-10", "12345678e-11",
+                                          "3.962e-05", "7e+10", "7E10", "9.99999e10", "0.5e11", "5e-11",
+                                          "10000000000", "100000000000", "-0.0", "0", "-15.57"}) {
+            assertParsesLikeJdk(value);
+        }
+    }
+
+    @Test
+    public void randomValuesNearTheLimits() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long mantissa = (1L << 24) + random.nextInt(64) - 32;
+            if (random.nextBoolean()) {
+                mantissa = random.nextInt(1 << 24);
+            }
+            int exponent = random.nextInt(25) - 12;
+            String digits = Long.toString(mantissa);
+            String value;
+            switch (random.nextInt(3)) {
+                case 0:
+                    value = digits + "e" + exponent;
+                    break;
+                case 1:
+                    //Mismo numero con el punto dentro de los digitos
+                    int dot = random.nextInt(digits.length() + 1);
+                    value = digits.substring(0, dot) + "." + digits.substring(dot) + "e" + exponent;
+                    break;
+                default:
+                    value = digits;
+            }
+            assertParsesLikeJdk(random.nextBoolean() ? "-" + value : value);
+        }
+    }
+}
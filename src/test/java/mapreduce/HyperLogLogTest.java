@@ -0,0 +1,144 @@
+/**
+ * Este archivo contiene la prueba HyperLogLogTest que revisa la serializacion,
+ * la union y la estimacion de HyperLogLog.
+ */
+
+package mapreduce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+
+public class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+
+    // Sketch con los textos album-from ... album-(to - 1)
+    private static HyperLogLog sketch(int precision, int from, int to) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = from; i < to; i++) {
+            sketch.add(i % 2 == 0 ? "album-" + i : new Utf8("album-" + i));
+        }
+        return sketch;
+    }
+
+    private static boolean isSparse(ByteBuffer buffer) {
+        return (buffer.get(buffer.position()) & 0x80) != 0;
+    }
+
+    @Test
+    public void sparseRoundTrip() {
+        HyperLogLog sketch = sketch(PRECISION, 0, 100);
+        ByteBuffer buffer = sketch.toByteBuffer();
+        assertTrue(isSparse(buffer));
+        assertTrue(buffer.remaining() < 1 + (1 << PRECISION));
+        HyperLogLog copy = HyperLogLog.fromByteBuffer(buffer);
+        assertEquals(buffer, copy.toByteBuffer());
+        assertEquals(sketch.estimate(), copy.estimate());
+    }
+
+    @Test
+    public void denseRoundTrip() {
+        HyperLogLog sketch = sketch(PRECISION, 0, 50000);
+        ByteBuffer buffer = sketch.toByteBuffer();
+        assertTrue(!isSparse(buffer));
+        assertEquals(1 + (1 << PRECISION), buffer.remaining());
+        HyperLogLog copy = HyperLogLog.fromByteBuffer(buffer);
+        assertEquals(buffer, copy.toByteBuffer());
+        assertEquals(sketch.estimate(), copy.estimate());
+    }
+
+    // Justo en el limite: con un tercio de los registros usados se escribe denso
+    @Test
+    public void switchesToDenseAtOneThirdOfTheRegisters() {
+        int precision = HyperLogLog.MIN_PRECISION;
+        int m = 1 << precision;
+        HyperLogLog sketch = new HyperLogLog(precision);
+        int i = 0;
+        while (true) {
+            ByteBuffer buffer = sketch.toByteBuffer();
+            int used = usedRegisters(buffer, m);
+            assertEquals(3 * used < m, isSparse(buffer), "registros usados: " + used);
+            if (!isSparse(buffer)) {
+                break;
+            }
+            sketch.add("album-" + i++);
+        }
+    }
+
+    private static int usedRegisters(ByteBuffer buffer, int m) {
+        if (isSparse(buffer)) {
+            return (buffer.remaining() - 1) / 3;
+        }
+        int used = 0;
+        for (int i = 0; i < m; i++) {
+            if (buffer.get(buffer.position() + 1 + i) != 0) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    // Unir sketches en cualquier codificacion da lo mismo que un solo sketch con todos los textos
+    @Test
+    public void mergeMixedEncodings() {
+        HyperLogLog all = sketch(PRECISION, 0, 50100);
+        ByteBuffer sparse = sketch(PRECISION, 50000, 50100).toByteBuffer();
+        ByteBuffer dense = sketch(PRECISION, 0, 50000).toByteBuffer();
+        assertTrue(isSparse(sparse));
+        assertTrue(!isSparse(dense));
+
+        HyperLogLog fromSparse = HyperLogLog.fromByteBuffer(sparse);
+        fromSparse.merge(dense);
+        assertEquals(all.toByteBuffer(), fromSparse.toByteBuffer());
+
+        HyperLogLog fromDense = HyperLogLog.fromByteBuffer(dense);
+        fromDense.merge(sparse);
+        assertEquals(all.toByteBuffer(), fromDense.toByteBuffer());
+
+        HyperLogLog objects = sketch(PRECISION, 50000, 50100);
+        objects.merge(sketch(PRECISION, 0, 50000));
+        assertEquals(all.toByteBuffer(), objects.toByteBuffer());
+
+        //merge(ByteBuffer) no debe mover la posicion del buffer
+        assertEquals(0, sparse.position());
+        assertEquals(0, dense.position());
+    }
+
+    @Test
+    public void precisionMismatch() {
+        HyperLogLog sketch = sketch(PRECISION, 0, 10);
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(sketch(PRECISION + 1, 0, 10)));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(sketch(PRECISION + 1, 0, 10).toByteBuffer()));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(sketch(PRECISION - 1, 0, 50000).toByteBuffer()));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MIN_PRECISION - 1));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+        assertEquals(HyperLogLog.MAX_PRECISION, HyperLogLog.checkPrecision(HyperLogLog.MAX_PRECISION));
+    }
+
+    // La estimacion queda a menos de 3 errores estandar de la cantidad real, tanto
+    // en el rango del conteo lineal (hasta 2.5 * 2^precision) como por encima
+    @Test
+    public void estimateWithinThreeStandardErrors() {
+        for (int precision : new int[] {10, 12, 14}) {
+            for (int cardinality : new int[] {10, 100, 1000, 5000, 20000, 100000, 300000}) {
+                long estimate = sketch(precision, 0, cardinality).estimate();
+                double tolerance = Math.max(1, 3 * HyperLogLog.relativeError(precision) * cardinality);
+                assertTrue(Math.abs(estimate - cardinality) <= tolerance,
+                    "precision " + precision + ", " + cardinality + " textos: estimacion " + estimate);
+            }
+        }
+    }
+
+    @Test
+    public void emptySketch() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        assertEquals(0, sketch.estimate());
+        assertEquals(0, HyperLogLog.fromByteBuffer(sketch.toByteBuffer()).estimate());
+    }
+}
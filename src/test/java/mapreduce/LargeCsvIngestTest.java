@@ -0,0 +1,90 @@
+/**
+ * Este archivo contiene la prueba LargeCsvIngestTest que serializa un CSV mas
+ * grande que la memoria de la JVM.
+ */
+
+package mapreduce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Surefire corre las pruebas en una JVM aparte con poca memoria (ver argLine en
+// pom.xml), y el CSV generado es mas grande que esa memoria: si SpotifyParser o
+// SpotifySerializer guardaran las filas, la prueba terminaria con OutOfMemoryError
+public class LargeCsvIngestTest {
+
+    // Una fila del CSV limpio, con el id de la cancion al inicio
+    private static final String ROW = ",Song,196217,0,57,0.303,3.962e-05,0.623,0.5,5,-15.57,0.72,0.407,0.89,4,"
+        + "0.804,Album %d,single,1983,4,14,Thu,3,Art 0,8,590497,latin rock";
+
+    @TempDir
+    static Path dir;
+
+    private static Path csv;
+    private static long rows;
+
+    @BeforeAll
+    static void writeCsv() throws IOException {
+        csv = dir.resolve("tracks-clean.csv");
+        long size = Runtime.getRuntime().maxMemory() + (16L << 20);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            long bytes = 0;
+            while (bytes < size) {
+                String line = "id" + rows + String.format(ROW, rows % 1000) + "\n";
+                writer.write(line);
+                bytes += line.length();
+                rows++;
+            }
+        }
+        assertTrue(Files.size(csv) > Runtime.getRuntime().maxMemory());
+    }
+
+    @Test
+    public void parserStreamsEveryRow() throws IOException {
+        long count = 0;
+        try (SpotifyParser.RecordIterator iterator = new SpotifyParser().open(new Text(csv.toString()))) {
+            while (iterator.hasNext()) {
+                assertEquals(27, iterator.next().length);
+                count++;
+            }
+        }
+        assertEquals(rows, count);
+    }
+
+    @Test
+    public void serializerWritesEveryRow() throws IOException {
+        Path output = dir.resolve("outputSerializado");
+        Configuration conf = new Configuration();
+        conf.set(SpotifySerializer.INPUT_KEY, csv.toString());
+        conf.set(SpotifySerializer.OUTPUT_KEY, output.toString());
+        conf.setLong(SpotifySerializer.PROGRESS_KEY, 0);
+        SpotifySerializer.serializer(conf);
+
+        long count = 0;
+        File avro = output.resolve("spotify.avro").toFile();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(avro, new GenericDatumReader<>())) {
+            GenericRecord record = null;
+            while (reader.hasNext()) {
+                record = reader.next(record);
+                count++;
+            }
+        }
+        assertEquals(rows, count);
+    }
+}
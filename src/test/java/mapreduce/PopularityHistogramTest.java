@@ -0,0 +1,115 @@
+/**
+ * Este archivo contiene la prueba PopularityHistogramTest que compara las
+ * estadisticas de PopularityHistogram con el calculo anterior, que ordenaba
+ * todas las popularidades del año.
+ */
+
+package mapreduce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PopularityHistogramTest {
+
+    // Mediana de un arreglo ordenado, como calculateMedian del reducer anterior
+    private static double median(int[] sorted) {
+        int n = sorted.length;
+        return n % 2 == 0 ? (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0 : sorted[n / 2];
+    }
+
+    private static void assertSameAsSorting(int[] values) {
+        PopularityHistogram histogram = new PopularityHistogram();
+        for (int value : values) {
+            assertTrue(histogram.add(value));
+        }
+        int n = values.length;
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        String name = Arrays.toString(sorted);
+
+        //Cuartiles como en el reducer anterior: con un solo valor los tres son ese
+        //valor, y si no son las medianas de las mitades sin la mediana si n es impar
+        double q1 = sorted[0];
+        double q3 = sorted[0];
+        if (n > 1) {
+            q1 = median(Arrays.copyOfRange(sorted, 0, n / 2));
+            q3 = median(Arrays.copyOfRange(sorted, n % 2 == 0 ? n / 2 : n / 2 + 1, n));
+        }
+        assertEquals(n, histogram.size(), name);
+        assertEquals(sorted[0], histogram.min(), name);
+        assertEquals(sorted[n - 1], histogram.max(), name);
+        assertEquals(q1, histogram.q1(), 0.0, name);
+        assertEquals(median(sorted), histogram.q2(), 0.0, name);
+        assertEquals(q3, histogram.q3(), 0.0, name);
+
+        //La moda es la popularidad mas repetida. El reducer anterior desempataba
+        //con el orden de un HashMap; ahora, con empate, es la menor popularidad
+        int[] counts = new int[PopularityHistogram.MAX_POPULARITY + 1];
+        int maxCount = 0;
+        for (int value : values) {
+            maxCount = Math.max(maxCount, ++counts[value]);
+        }
+        int mode = 0;
+        while (counts[mode] != maxCount) {
+            mode++;
+        }
+        assertEquals(mode, histogram.mode(), name);
+    }
+
+    @Test
+    public void smallCases() {
+        assertSameAsSorting(new int[] {42});
+        assertSameAsSorting(new int[] {0, 100});
+        assertSameAsSorting(new int[] {7, 3, 5});
+        assertSameAsSorting(new int[] {1, 2, 3, 4});
+        assertSameAsSorting(new int[] {9, 1, 5, 5, 1});
+        assertSameAsSorting(new int[] {50, 50, 50, 50, 50, 50});
+        assertSameAsSorting(new int[] {100, 0, 100, 0, 3});
+    }
+
+    @Test
+    public void randomCasesOfEveryParity() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            int[] values = new int[1 + random.nextInt(60)];
+            //Con pocas popularidades distintas hay mas empates en la moda
+            int distinct = 1 + random.nextInt(PopularityHistogram.MAX_POPULARITY + 1);
+            int low = random.nextInt(PopularityHistogram.MAX_POPULARITY + 2 - distinct);
+            for (int j = 0; j < values.length; j++) {
+                values[j] = low + random.nextInt(distinct);
+            }
+            assertSameAsSorting(values);
+        }
+    }
+
+    @Test
+    public void outOfRangeValuesAreSkipped() {
+        PopularityHistogram histogram = new PopularityHistogram();
+        assertFalse(histogram.add(-1));
+        assertFalse(histogram.add(PopularityHistogram.MAX_POPULARITY + 1));
+        assertEquals(0, histogram.size());
+        assertTrue(histogram.add(10));
+        assertFalse(histogram.add(1000));
+        assertEquals(1, histogram.size());
+        assertEquals(10, histogram.max());
+    }
+
+    @Test
+    public void clearReusesTheHistogram() {
+        PopularityHistogram histogram = new PopularityHistogram();
+        histogram.add(90);
+        histogram.add(95);
+        histogram.clear();
+        histogram.add(10);
+        assertEquals(1, histogram.size());
+        assertEquals(10, histogram.min());
+        assertEquals(10, histogram.max());
+        assertEquals(10, histogram.mode());
+    }
+}
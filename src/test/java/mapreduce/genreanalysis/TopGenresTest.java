@@ -0,0 +1,123 @@
+/**
+ * Este archivo contiene la prueba TopGenresTest que compara los géneros que
+ * guarda TopGenres con los que salen de ordenar todos los géneros del año.
+ */
+
+package mapreduce.genreanalysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import classes.avro.GenreCount;
+
+public class TopGenresTest {
+
+    // Resultado esperado: se ordenan todos los géneros de más a menos canciones
+    // (y por nombre si empatan) y se guardan los que tienen al menos tantas
+    // canciones como el género en el puesto top
+    private static List<String> sortedWithTies(String[] genres, int[] counts, int top) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < genres.length; i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> counts[a] != counts[b] ? Integer.compare(counts[b], counts[a]) : genres[a].compareTo(genres[b]));
+        List<String> expected = new ArrayList<>();
+        for (int i : order) {
+            if (expected.size() >= top && counts[i] < counts[order.get(top - 1)]) {
+                break;
+            }
+            expected.add(genres[i] + "=" + counts[i]);
+        }
+        return expected;
+    }
+
+    private static List<String> topGenres(TopGenres topGenres, String[] genres, int[] counts) {
+        topGenres.clear();
+        for (int i = 0; i < genres.length; i++) {
+            topGenres.add(genres[i], counts[i]);
+        }
+        List<String> result = new ArrayList<>();
+        for (GenreCount genre : topGenres.genres()) {
+            result.add(genre.getGenre() + "=" + genre.getCount());
+        }
+        return result;
+    }
+
+    private static void assertSameAsSorting(String[] genres, int[] counts, int top) {
+        assertEquals(sortedWithTies(genres, counts, top), topGenres(new TopGenres(top), genres, counts),
+                     "top " + top + ": " + Arrays.toString(genres) + " " + Arrays.toString(counts));
+    }
+
+    @Test
+    public void tiesForTheLastPlaceAreKept() {
+        String[] genres = {"pop", "rock", "jazz", "rap"};
+        assertSameAsSorting(genres, new int[] {5, 3, 5, 5}, 1);
+        assertSameAsSorting(genres, new int[] {9, 3, 3, 3}, 2);
+        assertSameAsSorting(genres, new int[] {1, 1, 1, 1}, 3);
+    }
+
+    // Los empates del último puesto se descartan cuando entra un género con más
+    // canciones y el menor del heap sube
+    @Test
+    public void tiesAreDroppedWhenTheMinimumRises() {
+        String[] genres = {"a", "b", "c", "d", "e"};
+        assertSameAsSorting(genres, new int[] {2, 2, 2, 7, 8}, 1);
+        assertSameAsSorting(genres, new int[] {2, 2, 2, 7, 8}, 2);
+        assertSameAsSorting(genres, new int[] {4, 2, 2, 4, 8}, 2);
+        assertSameAsSorting(genres, new int[] {1, 3, 3, 2, 3}, 2);
+    }
+
+    @Test
+    public void fewerGenresThanTop() {
+        assertSameAsSorting(new String[] {"pop", "rock"}, new int[] {2, 4}, 5);
+        assertSameAsSorting(new String[0], new int[0], 3);
+    }
+
+    @Test
+    public void randomYears() {
+        Random random = new Random(2024);
+        TopGenres[] topGenres = new TopGenres[11];
+        for (int top = 1; top < topGenres.length; top++) {
+            topGenres[top] = new TopGenres(top);
+        }
+        for (int i = 0; i < 20000; i++) {
+            int top = random.nextBoolean() ? 1 : 2 + random.nextInt(topGenres.length - 2);
+            String[] genres = new String[random.nextInt(30)];
+            int[] counts = new int[genres.length];
+            //Con pocas cantidades distintas hay muchos empates
+            int maxCount = 1 + random.nextInt(random.nextBoolean() ? 4 : 100);
+            for (int j = 0; j < genres.length; j++) {
+                genres[j] = "genre" + j;
+                counts[j] = 1 + random.nextInt(maxCount);
+            }
+            //El orden en que llegan los géneros no debe cambiar el resultado
+            List<Integer> order = new ArrayList<>();
+            for (int j = 0; j < genres.length; j++) {
+                order.add(j);
+            }
+            Collections.shuffle(order, random);
+            String[] shuffledGenres = new String[genres.length];
+            int[] shuffledCounts = new int[genres.length];
+            for (int j = 0; j < genres.length; j++) {
+                shuffledGenres[j] = genres[order.get(j)];
+                shuffledCounts[j] = counts[order.get(j)];
+            }
+            //La misma instancia se reutiliza entre años con clear()
+            assertEquals(sortedWithTies(genres, counts, top), topGenres(topGenres[top], shuffledGenres, shuffledCounts),
+                         "top " + top + ": " + Arrays.toString(shuffledGenres) + " " + Arrays.toString(shuffledCounts));
+        }
+    }
+
+    @Test
+    public void topMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TopGenres(0));
+    }
+}